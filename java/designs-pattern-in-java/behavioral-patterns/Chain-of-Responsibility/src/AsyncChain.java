@@ -0,0 +1,353 @@
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AsyncChain {
+    public static void main(String[] args) throws Exception
+    {
+        try (AsyncChainExecutor executor = new AsyncChainExecutor(64, 10_000)) {
+            Creature goblin = new Creature("Goblin", 2, 6);
+            System.out.println(goblin);
+
+            AsyncCreatureModifier rootModifier = new AsyncCreatureModifier(goblin);
+            rootModifier.setNext(new FireDamageModifier(goblin));
+            rootModifier.setNext(new AuditModifier(goblin, Duration.ofMillis(500))
+                    .withTimeout(Duration.ofMillis(50)));
+            rootModifier.setNext(new DoubleAttackModifier(goblin));
+
+            CompletionStage<Creature> result = executor.run(rootModifier);
+            System.out.println("The game loop keeps going while the chain runs...");
+            System.out.println("Updated creature stats: " + result.toCompletableFuture().join());
+            System.out.println("Handlers skipped after a timeout: " + executor.timeouts());
+            System.out.println("Handlers skipped after a failure: " + executor.failures());
+        }
+
+        System.out.println();
+        benchmark(1_000);
+        benchmark(10_000);
+    }
+
+    // every chain has a 5ms lookup, and one in a hundred hangs for a whole second
+    private static void benchmark(int creatures) throws Exception
+    {
+        Duration timeout = Duration.ofMillis(50);
+        List<AsyncCreatureModifier> chains = new ArrayList<>();
+        for (int i = 0; i < creatures; ++i) {
+            Creature creature = new Creature("Goblin #" + i, 2, 6);
+            AsyncCreatureModifier root = new AsyncCreatureModifier(creature);
+            root.setNext(new LookupModifier(creature, Duration.ofMillis(5)).withTimeout(timeout));
+            root.setNext(new AuditModifier(creature, Duration.ofMillis(i % 100 == 0 ? 1000 : 1))
+                    .withTimeout(timeout));
+            root.setNext(new DoubleAttackModifier(creature));
+            chains.add(root);
+        }
+
+        System.out.printf("%,d creatures, per-handler timeout %dms%n", creatures, timeout.toMillis());
+
+        // the synchronous chain would run this in the game loop, so only a sample is timed
+        int sample = 100;
+        long start = System.nanoTime();
+        for (int i = 0; i < sample; ++i)
+            chains.get(i).handleBlocking();
+        double syncMillis = (System.nanoTime() - start) / 1e6 / sample * creatures;
+        System.out.printf("  synchronous chain, estimated tick: %,.0f ms%n", syncMillis);
+
+        try (AsyncChainExecutor executor = new AsyncChainExecutor(256, creatures)) {
+            long[] latencies = new long[creatures];
+            List<CompletableFuture<Creature>> results = new ArrayList<>(creatures);
+
+            start = System.nanoTime();
+            for (int i = 0; i < creatures; ++i) {
+                long submitted = System.nanoTime();
+                int index = i;
+                results.add(executor.run(chains.get(i)).toCompletableFuture()
+                        .whenComplete((c, e) -> latencies[index] = System.nanoTime() - submitted));
+            }
+            double submitMillis = (System.nanoTime() - start) / 1e6;
+            CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).join();
+            double totalMillis = (System.nanoTime() - start) / 1e6;
+
+            Arrays.sort(latencies);
+            System.out.printf("  async chain, game loop blocked for: %,.1f ms%n", submitMillis);
+            System.out.printf("  async chain, all chains completed in: %,.0f ms%n", totalMillis);
+            System.out.printf("  chain latency p50=%.1f ms p99=%.1f ms max=%.1f ms, timeouts=%d%n",
+                    latencies[creatures / 2] / 1e6,
+                    latencies[(int) (creatures * 0.99)] / 1e6,
+                    latencies[creatures - 1] / 1e6,
+                    executor.timeouts());
+        }
+    }
+}
+
+class Creature
+{
+    public String name;
+    public volatile int attack, defense, health;
+
+    public Creature(String name, int attack, int defense)
+    {
+        this.name = name;
+        this.attack = attack;
+        this.defense = defense;
+    }
+
+    public Creature copy()
+    {
+        Creature copy = new Creature(name, attack, defense);
+        copy.health = health;
+        return copy;
+    }
+
+    public void update(Creature other)
+    {
+        attack = other.attack;
+        defense = other.defense;
+        health = other.health;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Creature{" +
+                "name='" + name + '\'' +
+                ", attack=" + attack +
+                ", defense=" + defense +
+                '}';
+    }
+}
+
+// runs every handler on its own virtual thread, with at most `concurrency` of them
+// alive at once and at most `maxPendingChains` chains in flight
+class AsyncChainExecutor implements AutoCloseable
+{
+    private final ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+    private final Queue<FutureTask<?>> pending = new ConcurrentLinkedQueue<>();
+    private final Semaphore handlers;
+    private final Semaphore chains;
+    private final AtomicInteger timeouts = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    public AsyncChainExecutor(int concurrency, int maxPendingChains)
+    {
+        this.handlers = new Semaphore(concurrency);
+        this.chains = new Semaphore(maxPendingChains);
+    }
+
+    // never blocks the caller, a full executor rejects the chain instead
+    public CompletionStage<Creature> run(AsyncCreatureModifier root)
+    {
+        if (!chains.tryAcquire())
+            return CompletableFuture.failedFuture(
+                    new RejectedExecutionException("Too many pending chains"));
+
+        return root.handle(this).whenComplete((c, e) -> chains.release());
+    }
+
+    <T> CompletableFuture<T> submit(Callable<T> work, Duration timeout)
+    {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            // the clock starts once the handler runs, not while it is queued
+            if (timeout != null)
+                result.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            try {
+                // once the timeout has completed the result, a late value is simply dropped
+                result.complete(work.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }, null);
+
+        // cancelling only asks a timed-out handler to stop, it may well keep running for a
+        // while, which is why handlers work on a copy that nobody looks at after the timeout
+        result.whenComplete((r, e) -> {
+            if (e instanceof TimeoutException) {
+                timeouts.incrementAndGet();
+                task.cancel(true);
+            }
+        });
+
+        pending.add(task);
+        drain();
+        return result;
+    }
+
+    void failed(AsyncCreatureModifier handler, Throwable e)
+    {
+        failures.incrementAndGet();
+        System.err.println("Skipped " + handler.getClass().getSimpleName()
+                + " for " + handler.creature.name + ": " + e);
+    }
+
+    // handlers over the limit wait in the queue rather than as parked threads
+    private void drain()
+    {
+        while (!pending.isEmpty() && handlers.tryAcquire()) {
+            FutureTask<?> task = pending.poll();
+            if (task == null) {
+                handlers.release();
+                continue;
+            }
+            threads.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    handlers.release();
+                    drain();
+                }
+            });
+        }
+    }
+
+    public int timeouts()
+    {
+        return timeouts.get();
+    }
+
+    public int failures()
+    {
+        return failures.get();
+    }
+
+    @Override
+    public void close()
+    {
+        threads.close();
+    }
+}
+
+class AsyncCreatureModifier
+{
+    protected Creature creature;
+    protected AsyncCreatureModifier next;
+    protected Duration timeout;
+
+    public AsyncCreatureModifier(Creature creature)
+    {
+        this.creature = creature;
+    }
+
+    public AsyncCreatureModifier withTimeout(Duration timeout)
+    {
+        this.timeout = timeout;
+        return this;
+    }
+
+    public void setNext(AsyncCreatureModifier next)
+    {
+        if (this.next != null)
+            this.next.setNext(next);
+        else
+            this.next = next;
+    }
+
+    // the work of this link only, blocking calls are fine here
+    protected void process(Creature target) throws InterruptedException
+    {
+    }
+
+    // every handler works on its own copy of the creature, which replaces the creature's
+    // stats only if the handler finishes in time; a handler that times out or fails is
+    // skipped, and the rest of the chain still runs
+    public CompletionStage<Creature> handle(AsyncChainExecutor executor)
+    {
+        return executor.submit(() -> {
+                    Creature copy = creature.copy();
+                    process(copy);
+                    return copy;
+                }, timeout)
+                .handle((copy, e) -> {
+                    if (e == null)
+                        creature.update(copy);
+                    else if (!(e instanceof TimeoutException))
+                        executor.failed(this, e);
+                    return creature;
+                })
+                .thenCompose(ignored -> next != null
+                        ? next.handle(executor)
+                        : CompletableFuture.completedFuture(creature));
+    }
+
+    // the same chain, run on the caller's thread the way MethodChain does it
+    public void handleBlocking()
+    {
+        try {
+            process(creature);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        if (next != null) next.handleBlocking();
+    }
+}
+
+class DoubleAttackModifier extends AsyncCreatureModifier
+{
+    public DoubleAttackModifier(Creature creature) {
+        super(creature);
+    }
+
+    @Override
+    protected void process(Creature target) {
+        target.attack *= 2;
+    }
+}
+
+class FireDamageModifier extends AsyncCreatureModifier
+{
+    public FireDamageModifier(Creature creature) {
+        super(creature);
+    }
+
+    @Override
+    protected void process(Creature target) {
+        target.defense -= 3;
+    }
+}
+
+// looks up a bonus in some remote service before applying it
+class LookupModifier extends AsyncCreatureModifier
+{
+    private final Duration delay;
+
+    public LookupModifier(Creature creature, Duration delay) {
+        super(creature);
+        this.delay = delay;
+    }
+
+    @Override
+    protected void process(Creature target) throws InterruptedException {
+        Thread.sleep(delay);
+        target.attack += 1;
+    }
+}
+
+// writes the creature's stats to an audit trail, which is sometimes very slow
+class AuditModifier extends AsyncCreatureModifier
+{
+    private final Duration delay;
+
+    public AuditModifier(Creature creature, Duration delay) {
+        super(creature);
+        this.delay = delay;
+    }
+
+    @Override
+    protected void process(Creature target) throws InterruptedException {
+        Thread.sleep(delay);
+    }
+}
@@ -0,0 +1,239 @@
+import java.util.stream.IntStream;
+
+public class BatchMethodChain {
+    public static void main(String[] args)
+    {
+        CreatureStore store = new CreatureStore(3);
+        store.add(2, 6, 10);
+        store.add(4, 8, 12);
+        store.add(1, 3, 5);
+        System.out.println(store);
+
+        BatchModifier rootModifier = new BatchModifier();
+        rootModifier.setNext(new FireDamageBatchModifier());
+        rootModifier.setNext(new DoubleAttackBatchModifier());
+
+        rootModifier.apply(store);
+        System.out.println("Updated creature stats: " + store);
+
+        System.out.println();
+        System.out.printf("%12s %20s %20s %20s%n",
+                "creatures", "per-object (c/s)", "batch (c/s)", "parallel batch (c/s)");
+
+        for (int size = 1_000; size <= 10_000_000; size *= 10) {
+            System.out.printf("%,12d %,20.0f %,20.0f %,20.0f%n",
+                    size, perObject(size), batch(size, false), batch(size, true));
+        }
+    }
+
+    private static final int ROUNDS = 5;
+
+    // one chain of modifier objects per creature, the way MethodChain does it
+    private static double perObject(int size)
+    {
+        Creature[] creatures = new Creature[size];
+        for (int i = 0; i < size; ++i)
+            creatures[i] = new Creature("Goblin", 2, 6);
+
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; ++round) {
+            long start = System.nanoTime();
+            for (Creature creature : creatures) {
+                CreatureModifier root = new CreatureModifier(creature);
+                root.setNext(new FireDamageModifier(creature));
+                root.setNext(new DoubleAttackModifier(creature));
+                root.handle();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return size / (best / 1e9);
+    }
+
+    // a single chain applied to every creature of a columnar store
+    private static double batch(int size, boolean parallel)
+    {
+        CreatureStore store = new CreatureStore(size);
+        for (int i = 0; i < size; ++i)
+            store.add(2, 6, 10);
+
+        BatchModifier root = new BatchModifier();
+        root.setNext(new FireDamageBatchModifier());
+        root.setNext(new DoubleAttackBatchModifier());
+
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; ++round) {
+            long start = System.nanoTime();
+            if (parallel) root.applyParallel(store);
+            else root.apply(store);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return size / (best / 1e9);
+    }
+}
+
+class CreatureStore
+{
+    public int[] attack, defense, health;
+    private int size;
+
+    public CreatureStore(int capacity)
+    {
+        attack = new int[capacity];
+        defense = new int[capacity];
+        health = new int[capacity];
+    }
+
+    public int add(int attack, int defense, int health)
+    {
+        int id = size++;
+        this.attack[id] = attack;
+        this.defense[id] = defense;
+        this.health[id] = health;
+        return id;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder("CreatureStore{");
+        for (int i = 0; i < size; ++i) {
+            if (i > 0) sb.append(", ");
+            sb.append("#").append(i)
+              .append("(attack=").append(attack[i])
+              .append(", defense=").append(defense[i])
+              .append(", health=").append(health[i])
+              .append(")");
+        }
+        return sb.append("}").toString();
+    }
+}
+
+class BatchModifier
+{
+    // creatures handed to a single fork/join task when running in parallel
+    private static final int CHUNK = 64 * 1024;
+
+    protected BatchModifier next;
+
+    public void setNext(BatchModifier next)
+    {
+        if (this.next != null)
+            this.next.setNext(next);
+        else
+            this.next = next;
+    }
+
+    public void apply(CreatureStore store)
+    {
+        handle(store, 0, store.size());
+    }
+
+    // every chunk walks the whole chain, so the order of modifiers is kept per creature
+    public void applyParallel(CreatureStore store)
+    {
+        int chunks = (store.size() + CHUNK - 1) / CHUNK;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int from = chunk * CHUNK;
+            handle(store, from, Math.min(from + CHUNK, store.size()));
+        });
+    }
+
+    public void handle(CreatureStore store, int from, int to)
+    {
+        if (next != null) next.handle(store, from, to);
+    }
+}
+
+class DoubleAttackBatchModifier extends BatchModifier
+{
+    @Override
+    public void handle(CreatureStore store, int from, int to)
+    {
+        int[] attack = store.attack;
+        for (int i = from; i < to; ++i)
+            attack[i] *= 2;
+        super.handle(store, from, to);
+    }
+}
+
+class FireDamageBatchModifier extends BatchModifier
+{
+    @Override
+    public void handle(CreatureStore store, int from, int to)
+    {
+        int[] defense = store.defense;
+        for (int i = from; i < to; ++i)
+            defense[i] -= 3;
+        super.handle(store, from, to);
+    }
+}
+
+// the per-object chain from MethodChain, without the console output
+
+class Creature
+{
+    public String name;
+    public int attack, defense, health;
+
+    public Creature(String name, int attack, int defense)
+    {
+        this.name = name;
+        this.attack = attack;
+        this.defense = defense;
+    }
+}
+
+class CreatureModifier
+{
+    protected Creature creature;
+    protected CreatureModifier next;
+
+    public CreatureModifier(Creature creature)
+    {
+        this.creature = creature;
+    }
+
+    public void setNext(CreatureModifier next)
+    {
+        if (this.next != null)
+            this.next.setNext(next);
+        else
+            this.next = next;
+    }
+
+    public void handle()
+    {
+        if (next != null) next.handle();
+    }
+}
+
+class DoubleAttackModifier extends CreatureModifier
+{
+    public DoubleAttackModifier(Creature creature) {
+        super(creature);
+    }
+
+    @Override
+    public void handle() {
+        creature.attack *= 2;
+        super.handle();
+    }
+}
+
+class FireDamageModifier extends CreatureModifier
+{
+    public FireDamageModifier(Creature creature) {
+        super(creature);
+    }
+
+    @Override
+    public void handle() {
+        creature.defense -= 3;
+        super.handle();
+    }
+}
@@ -0,0 +1,334 @@
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+public class PrimitiveBrokerChain {
+    public static void main(String[] args)
+    {
+        Game game = new Game();
+        Creature darkElf = new Creature(game, "Dark elf", 15, 20);
+
+        System.out.println(darkElf);
+        FireDamageModifier fireDamageModifier = new FireDamageModifier(game, darkElf);
+        DoubleAttackModifier doubleAttackModifier = new DoubleAttackModifier(game, darkElf);
+
+        try (fireDamageModifier; doubleAttackModifier) {
+            System.out.println("Creature stats during battle: " + darkElf);
+        }
+
+        System.out.println("Updated creature stats after recovery: " + darkElf);
+
+        System.out.println();
+        benchmark();
+    }
+
+    private static final int CREATURES = 1_000;
+    private static final int OPS = 1_000_000;
+
+    // one op reads both attack and defense of a creature, like toString() does
+    private static void benchmark()
+    {
+        Game game = new Game();
+        Creature[] creatures = new Creature[CREATURES];
+        for (int i = 0; i < CREATURES; ++i)
+            creatures[i] = new Creature(game, "Creature #" + i, 15, 20);
+        for (int i = 0; i < CREATURES; i += 10) {
+            new DoubleAttackModifier(game, creatures[i]);
+            new FireDamageModifier(game, creatures[i]);
+            new ShieldModifier(game, creatures[i]);
+        }
+
+        System.out.printf("%,d creatures, %d modifiers%n", CREATURES, 3 * CREATURES / 10);
+        for (int round = 0; round < 3; ++round) {
+            report("Query objects", creatures, false);
+            report("primitive query", creatures, true);
+        }
+    }
+
+    private static void report(String name, Creature[] creatures, boolean primitive)
+    {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        long sum = 0;
+        long bytes = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int op = 0; op < OPS; ++op) {
+            Creature creature = creatures[op % creatures.length];
+            sum += primitive
+                    ? creature.getAttack() + creature.getDefense()
+                    : creature.queryAttack() + creature.queryDefense();
+        }
+        long elapsed = System.nanoTime() - start;
+        bytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+
+        System.out.printf("  %-16s %,14.0f ops/s %8.1f bytes/op (checksum %d)%n",
+                name, OPS / (elapsed / 1e9), (double) bytes / OPS, sum);
+    }
+}
+
+class Game
+{
+    public Event<Query> queries = new Event<>();
+    public IntQueryEvent intQueries = new IntQueryEvent();
+    private int creatureCount = 0;
+
+    public int register()
+    {
+        return creatureCount++;
+    }
+}
+
+class Creature
+{
+    private Game game;
+    public final int id;
+    public String name;
+    public int baseAttack, baseDefense;
+
+    public Creature(Game game, String name, int baseAttack, int baseDefense)
+    {
+        this.game = game;
+        this.id = game.register();
+        this.name = name;
+        this.baseAttack = baseAttack;
+        this.baseDefense = baseDefense;
+    }
+
+    // the primitive path, the result is carried along the chain as an int
+    int getAttack()
+    {
+        return game.intQueries.fire(id, Query.Argument.ATTACK, baseAttack);
+    }
+
+    int getDefense()
+    {
+        return game.intQueries.fire(id, Query.Argument.DEFENSE, baseDefense);
+    }
+
+    // the original path from BrokerChain, allocating a Query per call
+    int queryAttack()
+    {
+        Query query = new Query(name, Query.Argument.ATTACK, baseAttack);
+        game.queries.fire(query);
+        return query.result;
+    }
+
+    int queryDefense()
+    {
+        Query query = new Query(name, Query.Argument.DEFENSE, baseDefense);
+        game.queries.fire(query);
+        return query.result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Creature{" +
+                "name='" + name + '\'' +
+                ", attack=" + getAttack() +
+                ", defense=" + getDefense() +
+                '}';
+    }
+}
+
+class Event<Args>
+{
+    private int index = 0;
+    private Map<Integer, Consumer<Args>> subscribers = new HashMap<>();
+
+    public int subscribe(Consumer<Args> consumer)
+    {
+        int i = index++;
+        subscribers.put(i, consumer);
+        return i;
+    }
+
+    public void unsubscribe(int key)
+    {
+        subscribers.remove(key);
+    }
+
+    public void fire(Args args)
+    {
+        for (Consumer<Args> consumer : subscribers.values()) {
+            consumer.accept(args);
+        }
+    }
+}
+
+class Query
+{
+    public String creatureName;
+
+    enum Argument
+    {
+        ATTACK, DEFENSE;
+    }
+
+    public Argument argument;
+    public int result;
+
+    public Query(String creatureName, Argument argument, int result)
+    {
+        this.creatureName = creatureName;
+        this.argument = argument;
+        this.result = result;
+    }
+}
+
+@FunctionalInterface
+interface IntQueryHandler
+{
+    int handle(int creatureId, Query.Argument argument, int result);
+}
+
+// subscribers live in plain arrays which are only copied on (un)subscribe,
+// so firing a query doesn't allocate anything
+class IntQueryEvent
+{
+    private int index = 0;
+    private int[] keys = new int[0];
+    private volatile IntQueryHandler[] handlers = new IntQueryHandler[0];
+
+    public synchronized int subscribe(IntQueryHandler handler)
+    {
+        int i = index++;
+        int n = keys.length;
+        int[] newKeys = Arrays.copyOf(keys, n + 1);
+        IntQueryHandler[] newHandlers = Arrays.copyOf(handlers, n + 1);
+        newKeys[n] = i;
+        newHandlers[n] = handler;
+        keys = newKeys;
+        handlers = newHandlers;
+        return i;
+    }
+
+    public synchronized void unsubscribe(int key)
+    {
+        for (int n = 0; n < keys.length; ++n) {
+            if (keys[n] != key) continue;
+
+            int[] newKeys = new int[keys.length - 1];
+            IntQueryHandler[] newHandlers = new IntQueryHandler[handlers.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, n);
+            System.arraycopy(keys, n + 1, newKeys, n, keys.length - n - 1);
+            System.arraycopy(handlers, 0, newHandlers, 0, n);
+            System.arraycopy(handlers, n + 1, newHandlers, n, handlers.length - n - 1);
+            keys = newKeys;
+            handlers = newHandlers;
+            return;
+        }
+    }
+
+    public int fire(int creatureId, Query.Argument argument, int result)
+    {
+        for (IntQueryHandler handler : handlers) {
+            result = handler.handle(creatureId, argument, result);
+        }
+        return result;
+    }
+}
+
+// modifiers
+
+class CreatureModifier
+{
+    protected Game game;
+    protected Creature creature;
+
+    public CreatureModifier(Game game, Creature creature)
+    {
+        this.game = game;
+        this.creature = creature;
+    }
+}
+
+class DoubleAttackModifier
+    extends CreatureModifier
+    implements AutoCloseable
+{
+    private final int token, intToken;
+
+    public DoubleAttackModifier(Game game, Creature creature) {
+        super(game, creature);
+        token = game.queries.subscribe(query -> {
+            if (creature.name.equals(query.creatureName)
+                && query.argument == Query.Argument.ATTACK)
+            {
+                query.result *= 2;
+            }
+        });
+        intToken = game.intQueries.subscribe((creatureId, argument, result) ->
+            creatureId == creature.id && argument == Query.Argument.ATTACK
+                ? result * 2
+                : result);
+    }
+
+    @Override
+    public void close()
+    {
+        game.queries.unsubscribe(token);
+        game.intQueries.unsubscribe(intToken);
+    }
+}
+
+class FireDamageModifier
+    extends CreatureModifier
+    implements AutoCloseable
+{
+    private final int token, intToken;
+
+    public FireDamageModifier(Game game, Creature creature) {
+        super(game, creature);
+        token = game.queries.subscribe(query -> {
+            if (creature.name.equals(query.creatureName)
+                && query.argument == Query.Argument.DEFENSE)
+            {
+                query.result -= 3;
+            }
+        });
+        intToken = game.intQueries.subscribe((creatureId, argument, result) ->
+            creatureId == creature.id && argument == Query.Argument.DEFENSE
+                ? result - 3
+                : result);
+    }
+
+    @Override
+    public void close()
+    {
+        game.queries.unsubscribe(token);
+        game.intQueries.unsubscribe(intToken);
+    }
+}
+
+class ShieldModifier
+    extends CreatureModifier
+    implements AutoCloseable
+{
+    private final int token, intToken;
+
+    public ShieldModifier(Game game, Creature creature) {
+        super(game, creature);
+        token = game.queries.subscribe(query -> {
+            if (creature.name.equals(query.creatureName)
+                && query.argument == Query.Argument.DEFENSE)
+            {
+                query.result += 5;
+            }
+        });
+        intToken = game.intQueries.subscribe((creatureId, argument, result) ->
+            creatureId == creature.id && argument == Query.Argument.DEFENSE
+                ? result + 5
+                : result);
+    }
+
+    @Override
+    public void close()
+    {
+        game.queries.unsubscribe(token);
+        game.intQueries.unsubscribe(intToken);
+    }
+}
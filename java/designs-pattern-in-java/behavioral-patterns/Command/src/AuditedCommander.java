@@ -0,0 +1,349 @@
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+public class AuditedCommander
+{
+    public static void main(String[] args) throws Exception
+    {
+        try (AsyncAuditSink audit = new AsyncAuditSink(1024, AsyncAuditSink.Format.JSON_LINES, System.out)) {
+            AuditedAccount account = new AuditedAccount(1, audit);
+            AccountCommand[] commands = {
+                new AccountCommand(account, AccountCommand.Action.DEPOSIT, 100),
+                new AccountCommand(account, AccountCommand.Action.WITHDRAW, 25),
+                new AccountCommand(account, AccountCommand.Action.WITHDRAW, 600)
+            };
+            for (AccountCommand command : commands)
+                command.execute();
+        }
+
+        System.out.println();
+        benchmark();
+    }
+
+    private static final int OPERATIONS = 2_000_000;
+
+    private static void benchmark() throws Exception
+    {
+        Path file = Files.createTempFile("audit", ".log");
+        System.out.printf("%-24s %16s %16s %14s%n", "audit", "caller (ops/s)", "written (ops/s)", "bytes");
+        for (int round = 0; round < 3; round++) {
+            // System.out flushes every line, this does the same but to a file
+            try (PrintStream out = new PrintStream(
+                    new BufferedOutputStream(new FileOutputStream(file.toFile())), true)) {
+                report(round, "println in BankAccount", run(new ConsoleAuditSink(out)), file);
+            }
+            try (FileOutputStream out = new FileOutputStream(file.toFile());
+                 AsyncAuditSink sink = new AsyncAuditSink(65536, AsyncAuditSink.Format.JSON_LINES, out)) {
+                report(round, "async, JSON lines", run(sink), file);
+            }
+            try (FileOutputStream out = new FileOutputStream(file.toFile());
+                 AsyncAuditSink sink = new AsyncAuditSink(65536, AsyncAuditSink.Format.BINARY, out)) {
+                report(round, "async, binary", run(sink), file);
+            }
+            report(round, "disabled", run(AuditSink.NONE), null);
+        }
+        Files.delete(file);
+    }
+
+    private static long start, recorded;
+
+    private static AuditSink run(AuditSink sink)
+    {
+        AuditedAccount[] accounts = new AuditedAccount[1000];
+        for (int i = 0; i < accounts.length; i++)
+            accounts[i] = new AuditedAccount(i, sink);
+        start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            AccountCommand.Action action = (i & 1) == 0
+                ? AccountCommand.Action.DEPOSIT
+                : AccountCommand.Action.WITHDRAW;
+            new AccountCommand(accounts[i % accounts.length], action, i & 511).execute();
+        }
+        recorded = System.nanoTime();
+        return sink;
+    }
+
+    // how fast the accounts got through the operations, and how fast they were all written
+    // out, including closing the sink
+    private static void report(int round, String name, AuditSink sink, Path file) throws IOException
+    {
+        sink.close();
+        double caller = (recorded - start) / 1e9, total = (System.nanoTime() - start) / 1e9;
+        if (round == 2)
+            System.out.printf("%-24s %,16.0f %,16.0f %,14d%n", name, OPERATIONS / caller,
+                OPERATIONS / total, file == null ? 0 : Files.size(file));
+    }
+}
+
+// where the account reports what happened to it
+interface AuditSink extends AutoCloseable
+{
+    enum Event
+    {
+        DEPOSITED, WITHDREW, REFUSED
+    }
+
+    void record(Event event, int account, int amount, int balance);
+
+    @Override
+    default void close() throws IOException
+    {
+    }
+
+    AuditSink NONE = (event, account, amount, balance) -> {};
+}
+
+// what BankAccount used to do, printing and concatenating on the caller's thread
+class ConsoleAuditSink implements AuditSink
+{
+    private final PrintStream out;
+
+    public ConsoleAuditSink(PrintStream out)
+    {
+        this.out = out;
+    }
+
+    @Override
+    public void record(Event event, int account, int amount, int balance)
+    {
+        switch (event) {
+            case DEPOSITED -> out.println("Deposited " + amount + ", balance is now " + balance);
+            case WITHDREW -> out.println("Withdrew " + amount + ", balance is now " + balance);
+            case REFUSED -> {}
+        }
+    }
+}
+
+// callers only copy a few numbers into a ring buffer, a background thread formats them and
+// writes them out; when the ring is full callers wait for the writer rather than lose events,
+// but only for so long, and once the sink is closed or the writer has failed events are
+// dropped and counted instead
+class AsyncAuditSink implements AuditSink
+{
+    enum Format
+    {
+        // {"time":...,"event":"DEPOSITED","account":1,"amount":100,"balance":100}
+        JSON_LINES,
+        // [long time][byte event][int account][int amount][int balance], big endian
+        BINARY
+    }
+
+    private static final byte[] TIME = ascii("{\"time\":"), AMOUNT = ascii(",\"amount\":"),
+        BALANCE = ascii(",\"balance\":"), END = ascii("}\n");
+    private static final byte[][] EVENTS = new byte[Event.values().length][];
+
+    static {
+        for (Event event : Event.values())
+            EVENTS[event.ordinal()] = ascii(",\"event\":\"" + event + "\",\"account\":");
+    }
+
+    private static byte[] ascii(String s)
+    {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static final long MAX_WAIT = TimeUnit.SECONDS.toNanos(1);
+
+    private final int mask;
+    private final long[] times;
+    private final byte[] events;
+    private final int[] accounts, amounts, balances;
+    // the sequence number last written to each slot, published once the slot is filled in
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed = 0;
+    private volatile boolean running = true;
+    private volatile IOException failure;
+    // where the writer was when a caller last gave up waiting for it
+    private volatile long stalledAt = -1;
+    private final LongAdder dropped = new LongAdder();
+
+    private final Format format;
+    private final OutputStream out;
+    private final Thread writer;
+
+    public AsyncAuditSink(int capacity, Format format, OutputStream out)
+    {
+        if (Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        mask = capacity - 1;
+        times = new long[capacity];
+        events = new byte[capacity];
+        accounts = new int[capacity];
+        amounts = new int[capacity];
+        balances = new int[capacity];
+        published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++)
+            published.set(i, i - capacity);
+        this.format = format;
+        this.out = out;
+        writer = new Thread(this::write, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void record(Event event, int account, int amount, int balance)
+    {
+        // a slot is only claimed once there is room for it, so one that is given up on never
+        // leaves a gap the writer would wait for
+        long sequence, waitingSince = 0;
+        while (true) {
+            if (!running || failure != null) {
+                dropped.increment();
+                return;
+            }
+            sequence = claimed.get();
+            if (sequence - consumed <= mask) {
+                if (claimed.compareAndSet(sequence, sequence + 1)) break;
+                continue;
+            }
+            // no point in waiting again for a writer that hasn't moved since
+            if (consumed == stalledAt) {
+                dropped.increment();
+                return;
+            }
+            if (waitingSince == 0) {
+                waitingSince = System.nanoTime();
+            } else if (System.nanoTime() - waitingSince > MAX_WAIT) {
+                stalledAt = consumed;
+                dropped.increment();
+                return;
+            }
+            LockSupport.parkNanos(10_000);
+        }
+
+        int slot = (int) sequence & mask;
+        times[slot] = System.currentTimeMillis();
+        events[slot] = (byte) event.ordinal();
+        accounts[slot] = account;
+        amounts[slot] = amount;
+        balances[slot] = balance;
+        published.lazySet(slot, sequence);
+    }
+
+    private void write()
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long next = 0;
+        try {
+            while (true) {
+                int slot = (int) next & mask;
+                if (published.get(slot) != next) {
+                    if (buffer.position() > 0) {
+                        out.write(buffer.array(), 0, buffer.position());
+                        buffer.clear();
+                        out.flush();
+                    }
+                    consumed = next;
+                    if (!running && claimed.get() == next) break;
+                    LockSupport.parkNanos(100_000);
+                    continue;
+                }
+
+                if (buffer.remaining() < 128) {
+                    out.write(buffer.array(), 0, buffer.position());
+                    buffer.clear();
+                    consumed = next;
+                }
+                if (format == Format.BINARY) {
+                    buffer.putLong(times[slot]).put(events[slot])
+                        .putInt(accounts[slot]).putInt(amounts[slot]).putInt(balances[slot]);
+                } else {
+                    buffer.put(TIME);
+                    putDecimal(buffer, times[slot]);
+                    buffer.put(EVENTS[events[slot]]);
+                    putDecimal(buffer, accounts[slot]);
+                    buffer.put(AMOUNT);
+                    putDecimal(buffer, amounts[slot]);
+                    buffer.put(BALANCE);
+                    putDecimal(buffer, balances[slot]);
+                    buffer.put(END);
+                }
+                next++;
+            }
+            out.flush();
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    // events that were never written because the ring stayed full for too long, or because
+    // they came in after the sink was closed or the writer had failed
+    public long dropped()
+    {
+        return dropped.sum();
+    }
+
+    // formats the number straight into the buffer, rather than going through a String
+    private static void putDecimal(ByteBuffer buffer, long value)
+    {
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int start = buffer.position();
+        do {
+            buffer.put((byte) ('0' + value % 10));
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = buffer.position() - 1; i < j; i++, j--) {
+            byte b = buffer.get(i);
+            buffer.put(i, buffer.get(j));
+            buffer.put(j, b);
+        }
+    }
+
+    // waits until everything recorded so far has been written and flushed, and rethrows what
+    // stopped the writer if it failed; the output stream belongs to whoever opened it
+    @Override
+    public void close() throws IOException
+    {
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) throw failure;
+    }
+}
+
+// the account from JournaledCommander, reporting to an audit sink instead of printing
+class AuditedAccount extends Account
+{
+    private final AuditSink audit;
+
+    public AuditedAccount(int id, AuditSink audit)
+    {
+        super(id);
+        this.audit = audit;
+    }
+
+    @Override
+    public void deposit(int amount)
+    {
+        super.deposit(amount);
+        audit.record(AuditSink.Event.DEPOSITED, id, amount, balance());
+    }
+
+    @Override
+    public boolean withdraw(int amount)
+    {
+        boolean succeeded = super.withdraw(amount);
+        audit.record(succeeded ? AuditSink.Event.WITHDREW : AuditSink.Event.REFUSED, id, amount, balance());
+        return succeeded;
+    }
+}
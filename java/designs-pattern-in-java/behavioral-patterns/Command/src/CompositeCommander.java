@@ -0,0 +1,177 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class CompositeCommander
+{
+    public static void main(String[] args)
+    {
+        Account from = new Account(1), to = new Account(2);
+        from.deposit(100);
+
+        // a transfer is a withdrawal and a deposit which have to happen together or not at all
+        CompositeAccountCommand transfer = new CompositeAccountCommand(List.of(
+            new AccountCommand(from, AccountCommand.Action.WITHDRAW, 100),
+            new AccountCommand(to, AccountCommand.Action.DEPOSIT, 100)));
+        transfer.execute();
+        System.out.println("Transfer succeeded: " + transfer.succeeded() + ", " + from + " " + to);
+        transfer.undo();
+        System.out.println("Transfer undone: " + from + " " + to);
+
+        CompositeAccountCommand tooMuch = new CompositeAccountCommand(List.of(
+            new AccountCommand(to, AccountCommand.Action.DEPOSIT, 1000),
+            new AccountCommand(from, AccountCommand.Action.WITHDRAW, 1000)));
+        tooMuch.execute();
+        System.out.println("Transfer succeeded: " + tooMuch.succeeded() + ", " + from + " " + to);
+
+        System.out.println();
+        benchmark();
+    }
+
+    private static final int COMMANDS = 1_000_000;
+
+    private static void benchmark()
+    {
+        System.out.printf("%,d commands per batch%n", COMMANDS);
+        System.out.printf("%10s %16s %16s %16s %16s%n", "accounts", "loop exec (ms)",
+            "batch exec (ms)", "loop undo (ms)", "bulk undo (ms)");
+        for (int accountCount : new int[] { 1_000, 100_000, 1_000_000 }) {
+            double[] times = new double[4];
+            for (int round = 0; round < 5; round++) {
+                Account[] accounts = new Account[accountCount];
+                for (int i = 0; i < accountCount; i++)
+                    accounts[i] = new Account(i);
+                List<AccountCommand> commands = randomCommands(accounts);
+                CompositeAccountCommand batch = new CompositeAccountCommand(commands);
+
+                long start = System.nanoTime();
+                for (Command command : commands)
+                    command.execute();
+                times[0] = (System.nanoTime() - start) / 1e6;
+                start = System.nanoTime();
+                for (Command command : commands.reversed())
+                    command.undo();
+                times[2] = (System.nanoTime() - start) / 1e6;
+
+                start = System.nanoTime();
+                batch.execute();
+                times[1] = (System.nanoTime() - start) / 1e6;
+                start = System.nanoTime();
+                batch.undo();
+                times[3] = (System.nanoTime() - start) / 1e6;
+
+                for (Account account : accounts)
+                    if (account.balance() != 0) throw new IllegalStateException(account + " wasn't restored");
+            }
+            System.out.printf("%,10d %,16.1f %,16.1f %,16.1f %,16.1f%n",
+                accountCount, times[0], times[1], times[2], times[3]);
+        }
+    }
+
+    // deposits and withdrawals spread at random over the accounts, none of which can fail
+    // when executed in order, so the whole batch goes through
+    private static List<AccountCommand> randomCommands(Account[] accounts)
+    {
+        SplittableRandom random = new SplittableRandom(42);
+        int[] balances = new int[accounts.length];
+        List<AccountCommand> commands = new ArrayList<>(COMMANDS);
+        for (int i = 0; i < COMMANDS; i++) {
+            int account = random.nextInt(accounts.length), amount = random.nextInt(1, 300);
+            AccountCommand.Action action = AccountCommand.Action.DEPOSIT;
+            if (random.nextBoolean() && balances[account] - amount >= -500) {
+                action = AccountCommand.Action.WITHDRAW;
+                balances[account] -= amount;
+            } else {
+                balances[account] += amount;
+            }
+            commands.add(new AccountCommand(accounts[account], action, amount));
+        }
+        return commands;
+    }
+}
+
+// executes all of its commands or none of them: the first one that fails rolls back the
+// ones before it, and undoing the batch puts every account back with a single adjustment
+class CompositeAccountCommand implements Command
+{
+    private final List<AccountCommand> commands;
+    private NetChanges changes;
+    private boolean succeeded;
+
+    public CompositeAccountCommand(List<AccountCommand> commands)
+    {
+        this.commands = commands;
+    }
+
+    // the order of deposits and withdrawals only matters for the overdraft checks, which are
+    // passed on the way in, so all that's needed to undo them later is each account's net change
+    @Override
+    public void execute()
+    {
+        succeeded = false;
+        changes = new NetChanges();
+        for (AccountCommand command : commands) {
+            command.execute();
+            if (!command.succeeded()) {
+                changes.revert();
+                return;
+            }
+            changes.add(command.account, command.delta());
+        }
+        succeeded = true;
+    }
+
+    @Override
+    public void undo()
+    {
+        if (!succeeded) return;
+        changes.revert();
+        succeeded = false;
+    }
+
+    public boolean succeeded()
+    {
+        return succeeded;
+    }
+}
+
+// net balance change per account, in an open addressing table keyed by account id that
+// grows with the number of accounts rather than the number of commands
+class NetChanges
+{
+    private Account[] accounts = new Account[16];
+    private int[] deltas = new int[16];
+    private int shift = 28, size = 0;
+
+    public void add(Account account, int delta)
+    {
+        int mask = accounts.length - 1;
+        int i = (account.id * 0x9E3779B9) >>> shift;
+        while (accounts[i] != null && accounts[i] != account)
+            i = (i + 1) & mask;
+        if (accounts[i] == null) {
+            accounts[i] = account;
+            size++;
+        }
+        deltas[i] += delta;
+        if (size * 2 > accounts.length) grow();
+    }
+
+    private void grow()
+    {
+        Account[] oldAccounts = accounts;
+        int[] oldDeltas = deltas;
+        accounts = new Account[oldAccounts.length * 2];
+        deltas = new int[oldDeltas.length * 2];
+        shift--;
+        size = 0;
+        for (int i = 0; i < oldAccounts.length; i++)
+            if (oldAccounts[i] != null) add(oldAccounts[i], oldDeltas[i]);
+    }
+
+    public void revert()
+    {
+        for (int i = 0; i < accounts.length; i++)
+            if (accounts[i] != null) accounts[i].adjust(-deltas[i]);
+    }
+}
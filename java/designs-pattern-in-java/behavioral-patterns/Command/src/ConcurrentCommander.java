@@ -0,0 +1,225 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+public class ConcurrentCommander
+{
+    public static void main(String[] args) throws Exception
+    {
+        Account[] accounts = { new Account(0), new Account(1) };
+        List<AccountCommand> commands = new ArrayList<>();
+        try (LaneExecutor executor = new LaneExecutor(2)) {
+            // the lanes run concurrently, but each account's commands stay in order
+            for (int i = 0; i < 3; i++) {
+                for (Account account : accounts) {
+                    AccountCommand deposit = new AccountCommand(account, AccountCommand.Action.DEPOSIT, 100);
+                    AccountCommand withdraw = new AccountCommand(account, AccountCommand.Action.WITHDRAW, 300);
+                    commands.add(deposit);
+                    commands.add(withdraw);
+                    executor.submit(deposit);
+                    executor.submit(withdraw);
+                }
+            }
+            executor.awaitIdle();
+        }
+        for (AccountCommand command : commands)
+            System.out.println(command);
+        for (Account account : accounts)
+            System.out.println(account);
+
+        System.out.println();
+        benchmark();
+    }
+
+    private static final int ACCOUNTS = 1_000_000, COMMANDS = 4_000_000;
+
+    private static void benchmark() throws Exception
+    {
+        Account[] accounts = new Account[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++)
+            accounts[i] = new Account(i);
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("%,d accounts, %d cores%n", ACCOUNTS, cores);
+        System.out.printf("%8s %18s %18s %18s%n", "threads", "global lock (c/s)",
+            "striped (c/s)", cores + " lanes (c/s)");
+        for (int threads = 8; threads <= 64; threads *= 2) {
+            double global = 0, striped = 0, lanes = 0;
+            for (int round = 0; round < 3; round++) {
+                Object lock = new Object();
+                global = run(threads, accounts, command -> {
+                    synchronized (lock) {
+                        command.execute();
+                    }
+                });
+
+                StripedExecutor stripes = new StripedExecutor(1024);
+                striped = run(threads, accounts, stripes::execute);
+
+                try (LaneExecutor executor = new LaneExecutor(cores)) {
+                    lanes = run(threads, accounts, new Executor() {
+                        @Override
+                        public void execute(AccountCommand command) throws InterruptedException
+                        {
+                            executor.submit(command);
+                        }
+
+                        @Override
+                        public void awaitIdle() throws InterruptedException
+                        {
+                            executor.awaitIdle();
+                        }
+                    });
+                }
+            }
+            System.out.printf("%8d %,18.0f %,18.0f %,18.0f%n", threads, global, striped, lanes);
+        }
+    }
+
+    interface Executor
+    {
+        void execute(AccountCommand command) throws InterruptedException;
+
+        // for executors that run commands in the background
+        default void awaitIdle() throws InterruptedException
+        {
+        }
+    }
+
+    // commands per second, with `threads` threads each handing in their share of random commands
+    private static double run(int threads, Account[] accounts, Executor executor) throws Exception
+    {
+        int perThread = COMMANDS / threads;
+        List<Thread> workers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            SplittableRandom random = new SplittableRandom(t);
+            workers.add(Thread.ofPlatform().start(() -> {
+                try {
+                    for (int i = 0; i < perThread; i++) {
+                        AccountCommand.Action action = random.nextBoolean()
+                            ? AccountCommand.Action.DEPOSIT
+                            : AccountCommand.Action.WITHDRAW;
+                        executor.execute(new AccountCommand(
+                            accounts[random.nextInt(accounts.length)], action, random.nextInt(1, 100)));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        for (Thread worker : workers)
+            worker.join();
+        executor.awaitIdle();
+        return perThread * threads / ((System.nanoTime() - start) / 1e9);
+    }
+}
+
+// every account belongs to exactly one lane, and a lane is a single thread executing its
+// commands in the order they were submitted, so accounts never need a lock
+class LaneExecutor implements AutoCloseable
+{
+    private final Lane[] lanes;
+
+    public LaneExecutor(int laneCount)
+    {
+        lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++)
+            lanes[i] = new Lane("lane-" + i);
+    }
+
+    // blocks while the lane is full; the future tells whether the command succeeded, or fails
+    // with whatever the command threw, without holding up the commands queued behind it
+    public CompletableFuture<Boolean> submit(AccountCommand command) throws InterruptedException
+    {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        lanes[Math.floorMod(command.account.id, lanes.length)].queue.put(() -> {
+            try {
+                command.execute();
+                result.complete(command.succeeded());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    // waits until everything submitted so far has been executed
+    public void awaitIdle() throws InterruptedException
+    {
+        CountDownLatch latch = new CountDownLatch(lanes.length);
+        for (Lane lane : lanes)
+            lane.queue.put(latch::countDown);
+        latch.await();
+    }
+
+    // waits until everything submitted so far has been executed, or until the caller is
+    // interrupted, in which case the lanes stop where they are
+    @Override
+    public void close()
+    {
+        try {
+            for (Lane lane : lanes)
+                lane.queue.put(() -> lane.running = false);
+            for (Lane lane : lanes)
+                lane.worker.join();
+        } catch (InterruptedException e) {
+            for (Lane lane : lanes)
+                lane.worker.interrupt();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Lane
+    {
+        private final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(4096);
+        private final Thread worker;
+        private boolean running = true;
+
+        Lane(String name)
+        {
+            worker = new Thread(this::run, name);
+            worker.start();
+        }
+
+        private void run()
+        {
+            List<Runnable> batch = new ArrayList<>();
+            try {
+                while (running) {
+                    batch.add(queue.take());
+                    queue.drainTo(batch);
+                    for (Runnable task : batch)
+                        task.run();
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
+
+// the caller executes the command itself, holding one of a fixed set of locks picked by account
+class StripedExecutor
+{
+    private final Object[] stripes;
+
+    public StripedExecutor(int stripeCount)
+    {
+        stripes = new Object[stripeCount];
+        for (int i = 0; i < stripeCount; i++)
+            stripes[i] = new Object();
+    }
+
+    public void execute(AccountCommand command)
+    {
+        synchronized (stripes[Math.floorMod(command.account.id, stripes.length)]) {
+            command.execute();
+        }
+    }
+}
@@ -0,0 +1,374 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32C;
+
+public class JournaledCommander
+{
+    public static void main(String[] args) throws Exception
+    {
+        Path file = Files.createTempFile("commands", ".journal");
+
+        Bank bank = new Bank();
+        try (CommandJournal journal = new CommandJournal(file, 64, bank)) {
+            journal.submit(new AccountCommand(bank.account(1), AccountCommand.Action.DEPOSIT, 100));
+            journal.submit(new AccountCommand(bank.account(1), AccountCommand.Action.WITHDRAW, 25));
+            journal.submit(new AccountCommand(bank.account(2), AccountCommand.Action.DEPOSIT, 50));
+            boolean succeeded = journal.submit(
+                new AccountCommand(bank.account(1), AccountCommand.Action.WITHDRAW, 600)).get();
+            System.out.println("Withdrawing 600 succeeded: " + succeeded);
+        }
+        System.out.println("Before the restart: " + bank);
+
+        // a crash in the middle of writing a record leaves a torn tail behind
+        Files.write(file, new byte[] { 1, 0, 0 }, StandardOpenOption.APPEND);
+
+        // opening the journal is enough to replay it
+        Bank recovered = new Bank();
+        new CommandJournal(file, 64, recovered).close();
+        System.out.println("After the restart:  " + recovered);
+        Files.delete(file);
+
+        System.out.println();
+        benchmark();
+    }
+
+    private static void benchmark() throws Exception
+    {
+        System.out.printf("%16s %14s %12s%n", "commands / fsync", "commands/s", "fsyncs");
+        for (int batch : new int[] { 1, 8, 64, 512, 4096 }) {
+            int commands = Math.min(2_000_000, 20_000 * batch);
+            Path file = Files.createTempFile("commands", ".journal");
+            Bank bank = new Bank();
+            for (int i = 0; i < 1000; i++)
+                bank.account(i);
+
+            long start = System.nanoTime();
+            CommandJournal journal = new CommandJournal(file, batch, bank);
+            CompletableFuture<Boolean> last = null;
+            for (int i = 0; i < commands; i++) {
+                AccountCommand.Action action = i % 3 == 0
+                    ? AccountCommand.Action.WITHDRAW
+                    : AccountCommand.Action.DEPOSIT;
+                last = journal.submit(new AccountCommand(bank.account(i % 1000), action, 10));
+            }
+            last.get();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long fsyncs = journal.fsyncs();
+            journal.close();
+            Files.delete(file);
+
+            System.out.printf("%,16d %,14.0f %,12d%n", batch, commands / seconds, fsyncs);
+        }
+    }
+}
+
+// the command from SimpleCommander, for accounts that can be found again by id
+class AccountCommand implements Command
+{
+    public enum Action
+    {
+        DEPOSIT, WITHDRAW
+    }
+
+    final Account account;
+    final Action action;
+    final int amount;
+    private boolean succeeded;
+
+    public AccountCommand(Account account, Action action, int amount)
+    {
+        this.account = account;
+        this.action = action;
+        this.amount = amount;
+    }
+
+    @Override
+    public void execute()
+    {
+        switch (action) {
+            case DEPOSIT:
+                account.deposit(amount);
+                succeeded = true;
+                break;
+            case WITHDRAW:
+                succeeded = account.withdraw(amount);
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void undo()
+    {
+        if (!succeeded) return;
+        switch (action) {
+            case DEPOSIT:
+                account.withdraw(amount);
+                break;
+            case WITHDRAW:
+                account.deposit(amount);
+                break;
+            default:
+                break;
+        }
+    }
+
+    public boolean succeeded()
+    {
+        return succeeded;
+    }
+
+    // how much the command changed the balance by, if it has been executed
+    public int delta()
+    {
+        if (!succeeded) return 0;
+        return action == Action.DEPOSIT ? amount : -amount;
+    }
+
+    @Override
+    public String toString()
+    {
+        return action + " " + amount + " on account " + account.id
+            + (succeeded ? " succeeded" : " failed");
+    }
+}
+
+// write-ahead journal: commands are written to disk before they are executed, and a single
+// commit thread forces whole batches of them at once, so many commands share one fsync
+class CommandJournal implements AutoCloseable
+{
+    // [byte action][int account][int amount][int crc32c of the first nine bytes]
+    static final int RECORD = 13;
+
+    private record Pending(AccountCommand command, CompletableFuture<Boolean> result) {}
+
+    private static final Pending STOP = new Pending(null, null);
+
+    private final FileChannel channel;
+    private final int maxBatch;
+    private final BlockingQueue<Pending> queue;
+    private final Thread committer;
+    private volatile long fsyncs = 0;
+    private volatile IOException failure;
+
+    // replays whatever is already in `file` into `bank` before accepting new commands
+    public CommandJournal(Path file, int maxBatch, Bank bank) throws IOException
+    {
+        this.maxBatch = maxBatch;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        replay(bank);
+        queue = new ArrayBlockingQueue<>(Math.max(1024, maxBatch * 4));
+        committer = new Thread(this::commit, "journal-committer");
+        committer.start();
+    }
+
+    // executes every intact record in order, and cuts off the torn or corrupt tail a crash
+    // may have left behind
+    private void replay(Bank bank) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD * 4096);
+        CRC32C crc = new CRC32C();
+        long position = 0;
+        records:
+        while (channel.read(buffer, position + buffer.position()) > 0) {
+            buffer.flip();
+            while (buffer.remaining() >= RECORD) {
+                crc.reset();
+                crc.update(buffer.slice(buffer.position(), 9));
+                byte action = buffer.get();
+                int account = buffer.getInt(), amount = buffer.getInt(), checksum = buffer.getInt();
+                if (checksum != (int) crc.getValue()) break records;
+
+                new AccountCommand(bank.account(account),
+                    AccountCommand.Action.values()[action], amount).execute();
+                position += RECORD;
+            }
+            buffer.compact();
+        }
+        channel.truncate(position);
+        channel.position(position);
+    }
+
+    // the future completes once the command is on disk and has been executed, or fails if the
+    // journal couldn't be written; after that the journal doesn't take any more commands
+    public CompletableFuture<Boolean> submit(AccountCommand command) throws InterruptedException
+    {
+        if (failure != null)
+            throw new IllegalStateException("The journal has failed or been closed", failure);
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        queue.put(new Pending(command, result));
+        // the committer may have given up while this was being queued
+        if (failure != null) failQueued();
+        return result;
+    }
+
+    private void failQueued()
+    {
+        List<Pending> queued = new ArrayList<>();
+        queue.drainTo(queued);
+        for (Pending p : queued)
+            if (p != STOP) p.result().completeExceptionally(new UncheckedIOException(failure));
+    }
+
+    public long fsyncs()
+    {
+        return fsyncs;
+    }
+
+    private void commit()
+    {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD * maxBatch);
+        CRC32C crc = new CRC32C();
+        boolean running = true;
+        try {
+            while (running) {
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatch - 1);
+                // a submit racing close() can land behind STOP, so it isn't always last; whatever
+                // came in with it still gets committed
+                if (batch.removeIf(p -> p == STOP))
+                    running = false;
+
+                buffer.clear();
+                for (Pending p : batch) {
+                    int start = buffer.position();
+                    buffer.put((byte) p.command().action.ordinal());
+                    buffer.putInt(p.command().account.id);
+                    buffer.putInt(p.command().amount);
+                    crc.reset();
+                    crc.update(buffer.slice(start, 9));
+                    buffer.putInt((int) crc.getValue());
+                }
+                buffer.flip();
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+                if (!batch.isEmpty()) {
+                    channel.force(false);
+                    fsyncs++;
+                }
+
+                // only now that they're durable do the commands get to touch the accounts
+                for (Pending p : batch) {
+                    p.command().execute();
+                    p.result().complete(p.command().succeeded());
+                }
+                batch.clear();
+            }
+            // anything queued after STOP would never be picked up
+            fail(batch, new ClosedChannelException());
+        } catch (IOException e) {
+            fail(batch, e);
+        } catch (InterruptedException e) {
+            fail(batch, new InterruptedIOException("The journal was closed before committing"));
+        } catch (RuntimeException e) {
+            fail(batch, new IOException("The committer failed", e));
+        }
+    }
+
+    // nothing after this batch could be made durable either, so it all fails with it
+    private void fail(List<Pending> batch, IOException e)
+    {
+        failure = e;
+        for (Pending p : batch)
+            if (p != STOP) p.result().completeExceptionally(new UncheckedIOException(e));
+        failQueued();
+    }
+
+    // waits for everything submitted so far to be committed, or until the caller is
+    // interrupted, in which case whatever hasn't been committed yet fails
+    @Override
+    public void close() throws IOException
+    {
+        try {
+            queue.put(STOP);
+            committer.join();
+        } catch (InterruptedException e) {
+            committer.interrupt();
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+}
+
+// accounts by id, so replayed commands can find them again
+class Bank
+{
+    private final Map<Integer, Account> accounts = new HashMap<>();
+
+    public Account account(int id)
+    {
+        return accounts.computeIfAbsent(id, Account::new);
+    }
+
+    @Override
+    public String toString()
+    {
+        return accounts.values().toString();
+    }
+}
+
+// the account from SimpleCommander, without printing every mutation
+class Account
+{
+    final int id;
+    private int balance;
+    private int overdraftLimit = -500; // how much you can borrow
+
+    public Account(int id)
+    {
+        this.id = id;
+    }
+
+    public void deposit(int amount)
+    {
+        balance += amount;
+    }
+
+    public boolean withdraw(int amount)
+    {
+        if (balance - amount >= overdraftLimit)
+        {
+            balance -= amount;
+            return true;
+        }
+        return false;
+    }
+
+    // puts back what a command did, with no overdraft check since it's restoring a balance
+    // that was valid before
+    void adjust(int amount)
+    {
+        balance += amount;
+    }
+
+    public int balance()
+    {
+        return balance;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Account{" +
+                "id=" + id +
+                ", balance=" + balance +
+                '}';
+    }
+}
@@ -0,0 +1,184 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.disposables.Disposable;
+import io.reactivex.rxjava3.functions.Consumer;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+
+public class BatchingEventBroker {
+    public static void main(String[] args) throws InterruptedException
+    {
+        MulticastEventBroker<List<Goal>> broker = new MulticastEventBroker<>(Schedulers.computation(), 16);
+        BrokerSubscription coach, statistician;
+        try (BatchingPublisher<Goal> goals = new BatchingPublisher<>(broker, 3, 100, TimeUnit.MILLISECONDS,
+                Schedulers.computation())) {
+            Striker player = new Striker("Antony", goals::publish);
+            coach = goals.subscribe(new Coach()::congratulate, Overflow.BUFFER);
+            statistician = goals.subscribeBatches(new Statistician()::record, Overflow.BUFFER);
+
+            for (int i = 0; i < 5; i++)
+                player.score();
+        }
+        coach.await();
+        statistician.await();
+
+        System.out.println();
+        benchmark();
+        Schedulers.shutdown();
+    }
+
+    private static final int EVENTS = 2_000_000, SUBSCRIBERS = 16;
+
+    // sixteen subscribers, one of them recording how long each event took from publish to delivery
+    private static void benchmark() throws InterruptedException
+    {
+        System.out.printf("%10s %16s %14s %14s %8s%n", "batch size", "events/s", "p50 (us)", "p99 (us)", "lost");
+        for (int batchSize : new int[] { 1, 16, 256, 4096 }) {
+            double[] result = null;
+            for (int round = 0; round < 3; round++)
+                result = batchSize == 1 ? unbatched() : batched(batchSize);
+            System.out.printf("%10s %,16.0f %,14.1f %,14.1f %7.0f%%%n",
+                batchSize == 1 ? "none" : String.valueOf(batchSize), result[0], result[1], result[2], result[3]);
+        }
+    }
+
+    // the multicast broker from FlowableEventBroker with one event per publish
+    private static double[] unbatched() throws InterruptedException
+    {
+        MulticastEventBroker<Reading> broker = new MulticastEventBroker<>(Schedulers.computation(), 1024);
+        long[] latencies = new long[EVENTS];
+        int[] received = new int[1];
+        List<BrokerSubscription> subscriptions = new ArrayList<>();
+        subscriptions.add(broker.subscribe(r -> latencies[received[0]++] = System.nanoTime() - r.publishedAt(),
+            Overflow.BUFFER));
+        for (int i = 1; i < SUBSCRIBERS; i++) {
+            long[] sum = new long[1];
+            subscriptions.add(broker.subscribe(r -> sum[0] += r.value(), Overflow.BUFFER));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < EVENTS; i++)
+            broker.publish(new Reading(i, System.nanoTime()));
+        broker.complete();
+        return result(start, subscriptions, latencies, received);
+    }
+
+    private static double[] batched(int batchSize) throws InterruptedException
+    {
+        MulticastEventBroker<List<Reading>> broker = new MulticastEventBroker<>(Schedulers.computation(), 1024);
+        long[] latencies = new long[EVENTS];
+        int[] received = new int[1];
+        List<BrokerSubscription> subscriptions = new ArrayList<>();
+        long start;
+        try (BatchingPublisher<Reading> publisher = new BatchingPublisher<>(broker, batchSize,
+                1, TimeUnit.MILLISECONDS, Schedulers.computation())) {
+            subscriptions.add(publisher.subscribeBatches(batch -> {
+                long now = System.nanoTime();
+                for (Reading r : batch)
+                    latencies[received[0]++] = now - r.publishedAt();
+            }, Overflow.BUFFER));
+            for (int i = 1; i < SUBSCRIBERS; i++) {
+                long[] sum = new long[1];
+                subscriptions.add(publisher.subscribe(r -> sum[0] += r.value(), Overflow.BUFFER));
+            }
+
+            start = System.nanoTime();
+            for (int i = 0; i < EVENTS; i++)
+                publisher.publish(new Reading(i, System.nanoTime()));
+        }
+        return result(start, subscriptions, latencies, received);
+    }
+
+    // events per second until every subscriber is done, latency percentiles of the events that
+    // arrived, and the share of events the timing subscriber lost
+    private static double[] result(long start, List<BrokerSubscription> subscriptions,
+                                   long[] latencies, int[] counted) throws InterruptedException
+    {
+        for (BrokerSubscription subscription : subscriptions)
+            subscription.await();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        int received = counted[0];
+        long[] arrived = Arrays.copyOf(latencies, received);
+        Arrays.sort(arrived);
+        return new double[] { EVENTS / seconds,
+            arrived[received / 2] / 1e3, arrived[(int) (received * 0.99)] / 1e3,
+            100.0 * (EVENTS - received) / EVENTS };
+    }
+}
+
+record Reading(long value, long publishedAt) {}
+
+// collects events into batches of up to `maxBatch` and publishes each batch as a single event
+// on a multicast broker, sending a batch that isn't full anyway once `window` has passed, so
+// every subscriber pays for one queue hop per batch instead of one per event
+class BatchingPublisher<T> implements AutoCloseable
+{
+    private final MulticastEventBroker<List<T>> broker;
+    private final int maxBatch;
+    private final Disposable timer;
+    private List<T> batch;
+
+    public BatchingPublisher(MulticastEventBroker<List<T>> broker, int maxBatch,
+                             long window, TimeUnit unit, Scheduler scheduler)
+    {
+        this.broker = broker;
+        this.maxBatch = maxBatch;
+        batch = new ArrayList<>(maxBatch);
+        timer = scheduler.schedulePeriodicallyDirect(this::flush, window, window, unit);
+    }
+
+    // handing a batch to the broker only queues it, the lock just keeps a batch sent by the
+    // timer from overtaking one filled up by the publisher
+    public synchronized void publish(T event)
+    {
+        batch.add(event);
+        if (batch.size() == maxBatch)
+            flush();
+    }
+
+    private synchronized void flush()
+    {
+        if (batch.isEmpty()) return;
+        List<T> full = batch;
+        batch = new ArrayList<>(maxBatch);
+        // every subscriber gets the same list
+        broker.publish(Collections.unmodifiableList(full));
+    }
+
+    // the overflow counts whole batches, and so does what the subscription reports as dropped
+    public BrokerSubscription subscribeBatches(Consumer<? super List<T>> subscriber, Overflow overflow)
+    {
+        return broker.subscribe(subscriber, overflow);
+    }
+
+    // for subscribers that want one event at a time
+    public BrokerSubscription subscribe(Consumer<? super T> subscriber, Overflow overflow)
+    {
+        return broker.subscribe(batch -> {
+            for (T event : batch)
+                subscriber.accept(event);
+        }, overflow);
+    }
+
+    // sends whatever is left in the current batch and completes the broker
+    @Override
+    public synchronized void close()
+    {
+        timer.dispose();
+        flush();
+        broker.complete();
+    }
+}
+
+class Statistician
+{
+    public void record(List<Goal> goals)
+    {
+        System.out.println("The statistician records " + goals.size() + " goals at once");
+    }
+}
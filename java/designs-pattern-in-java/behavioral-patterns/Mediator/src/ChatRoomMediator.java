@@ -23,7 +23,15 @@ class ChatRoomMediator
     }
 }
 
-class ChatRoom 
+// what a participant needs from whichever room it is in
+interface Room
+{
+    void broadcast(String source, String message);
+
+    void message(String from, String to, String message);
+}
+
+class ChatRoom implements Room
 {
     private List<Person> participants = new ArrayList<>();
 
@@ -32,10 +40,17 @@ class ChatRoom
         String joinMsg = p.name + " has joined the room.";
         broadcast("room", joinMsg);
 
+        add(p);
+    }
+
+    // joins without the announcement, handy for filling up large rooms
+    public void add(Person p)
+    {
         p.room = this;
         participants.add(p);
     }
 
+    @Override
     public void broadcast(String source, String message)
     {
         participants.stream()
@@ -43,6 +58,7 @@ class ChatRoom
             .forEach(p -> p.receive(source, message));
     }
 
+    @Override
     public void message(String from, String to, String message) 
     {
         participants.stream()
@@ -55,7 +71,7 @@ class ChatRoom
 class Person 
 {
     String name;
-    ChatRoom room;
+    Room room;
     List<String> chatLog = new ArrayList<>();
 
     public Person(String name) {
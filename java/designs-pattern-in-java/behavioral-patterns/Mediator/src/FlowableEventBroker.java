@@ -0,0 +1,304 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.reactivex.rxjava3.core.BackpressureOverflowStrategy;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Observer;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.disposables.Disposable;
+import io.reactivex.rxjava3.functions.Consumer;
+import io.reactivex.rxjava3.processors.FlowableProcessor;
+import io.reactivex.rxjava3.processors.PublishProcessor;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+
+public class FlowableEventBroker {
+    public static void main(String[] args) throws InterruptedException
+    {
+        MulticastEventBroker<Goal> broker = new MulticastEventBroker<>(Schedulers.computation(), 16);
+        Striker player = new Striker("Antony", broker::publish);
+        // a coach only cares about the current score, so there's no point queueing up old goals
+        BrokerSubscription coach = broker.subscribe(new Coach()::congratulate, Overflow.LATEST);
+
+        player.score();
+        player.score();
+        Thread.sleep(100);
+
+        coach.dispose();
+        System.out.println("Subscribers after the coach left: " + broker.subscriberCount());
+        player.score();
+        broker.complete();
+
+        System.out.println();
+        benchmark();
+    }
+
+    private static final int DELIVERIES = 4_000_000;
+
+    private static void benchmark() throws InterruptedException
+    {
+        System.out.printf("%11s %20s %20s %20s %20s%n", "subscribers", "synchronous (ev/s)",
+            "drop (ev/s, lost)", "latest (ev/s, lost)", "buffer (ev/s, lost)");
+
+        for (int subscribers = 1; subscribers <= 64; subscribers *= 2) {
+            int events = Math.max(100_000, DELIVERIES / subscribers);
+            String[] results = new String[4];
+            for (int round = 0; round < 3; round++) {
+                results[0] = synchronous(subscribers, events);
+                results[1] = multicast(subscribers, events, Overflow.DROP);
+                results[2] = multicast(subscribers, events, Overflow.LATEST);
+                results[3] = multicast(subscribers, events, Overflow.BUFFER);
+            }
+            System.out.printf("%11d %20s %20s %20s %20s%n",
+                subscribers, results[0], results[1], results[2], results[3]);
+        }
+        Schedulers.shutdown();
+    }
+
+    private static String synchronous(int subscribers, int events)
+    {
+        SynchronousEventBroker<Integer> broker = new SynchronousEventBroker<>();
+        long[] sum = new long[1];
+        for (int i = 0; i < subscribers; i++)
+            broker.subscribe(e -> sum[0] += e);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < events; i++)
+            broker.publish(i & 127);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return String.format("%,.0f", events / seconds);
+    }
+
+    // events published per second until every subscriber is done, and the share of deliveries lost
+    private static String multicast(int subscribers, int events, Overflow overflow)
+        throws InterruptedException
+    {
+        MulticastEventBroker<Integer> broker = new MulticastEventBroker<>(Schedulers.computation(), 1024);
+        List<BrokerSubscription> subscriptions = new ArrayList<>();
+        long[] sums = new long[subscribers];
+        for (int i = 0; i < subscribers; i++) {
+            int index = i;
+            subscriptions.add(broker.subscribe(e -> sums[index] += e, overflow));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < events; i++)
+            broker.publish(i & 127);
+        broker.complete();
+        long dropped = 0;
+        for (BrokerSubscription subscription : subscriptions) {
+            subscription.await();
+            dropped += subscription.dropped();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return String.format("%,.0f %3.0f%%", events / seconds,
+            100.0 * dropped / ((long) events * subscribers));
+    }
+}
+
+// what a subscriber does once it has fallen `capacity` events behind
+enum Overflow
+{
+    // lose the newest events until it catches up
+    DROP,
+    // keep only the most recent event
+    LATEST,
+    // hold up to `capacity` more events, losing the oldest ones once that is full
+    BUFFER
+}
+
+// a multicast broker: every subscriber gets its own bounded queue and is served on its own
+// scheduler worker, so a slow subscriber only ever holds itself up; it doesn't extend Flowable
+// because Flowable.publish(int) would shadow publish(T) for integer events
+class MulticastEventBroker<T>
+{
+    private final FlowableProcessor<T> processor = PublishProcessor.<T>create().toSerialized();
+    private final Scheduler scheduler;
+    private final int capacity;
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    public MulticastEventBroker(Scheduler scheduler, int capacity)
+    {
+        this.scheduler = scheduler;
+        this.capacity = capacity;
+    }
+
+    // for composing with other operators; these subscribers get the events on the publishing
+    // thread and have to keep up by themselves
+    public Flowable<T> events()
+    {
+        return processor.hide();
+    }
+
+    public BrokerSubscription subscribe(Consumer<? super T> consumer, Overflow overflow)
+    {
+        return subscribe(consumer, overflow, scheduler, capacity);
+    }
+
+    public BrokerSubscription subscribe(Consumer<? super T> consumer, Overflow overflow,
+                                        Scheduler scheduler, int capacity)
+    {
+        BrokerSubscription subscription = new BrokerSubscription();
+        Flowable<T> events = switch (overflow) {
+            case DROP -> processor.onBackpressureDrop(e -> subscription.dropped.increment());
+            case LATEST -> processor.onBackpressureLatest(e -> subscription.dropped.increment());
+            case BUFFER -> processor.onBackpressureBuffer(capacity, subscription.dropped::increment,
+                BackpressureOverflowStrategy.DROP_OLDEST);
+        };
+
+        subscribers.incrementAndGet();
+        subscription.disposable = events
+            .observeOn(scheduler, false, capacity)
+            .doFinally(() -> {
+                subscribers.decrementAndGet();
+                subscription.done.countDown();
+            })
+            .subscribe(event -> deliver(consumer, event, subscription), error -> {
+                subscription.error = error;
+                System.err.println("A subscription of the broker ended with " + error);
+            });
+        return subscription;
+    }
+
+    // a consumer that throws is reported and counted but stays subscribed, left to RxJava
+    // the exception would cancel the subscription and every later event would be lost
+    private static <T> void deliver(Consumer<? super T> consumer, T event, BrokerSubscription subscription)
+    {
+        try {
+            consumer.accept(event);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            subscription.failures.increment();
+            System.err.println("A subscriber of the broker failed on " + event + ": " + e);
+        }
+    }
+
+    // safe to call from any number of threads at once
+    public void publish(T event)
+    {
+        processor.onNext(event);
+    }
+
+    public void complete()
+    {
+        processor.onComplete();
+    }
+
+    public int subscriberCount()
+    {
+        return subscribers.get();
+    }
+}
+
+class BrokerSubscription implements Disposable
+{
+    final LongAdder dropped = new LongAdder();
+    final LongAdder failures = new LongAdder();
+    final CountDownLatch done = new CountDownLatch(1);
+    volatile Disposable disposable;
+    volatile Throwable error;
+
+    public long dropped()
+    {
+        return dropped.sum();
+    }
+
+    // events the consumer threw on
+    public long failures()
+    {
+        return failures.sum();
+    }
+
+    // what ended the subscription, if it didn't end by the broker completing or being disposed
+    public Throwable error()
+    {
+        return error;
+    }
+
+    // waits until the broker completes and everything queued has been handled, or until disposed
+    public void await() throws InterruptedException
+    {
+        done.await();
+    }
+
+    // removes the subscriber from the broker, whatever is still queued for it is thrown away
+    @Override
+    public void dispose()
+    {
+        disposable.dispose();
+    }
+
+    @Override
+    public boolean isDisposed()
+    {
+        return disposable.isDisposed();
+    }
+}
+
+// events are delivered later and on another thread, so a goal is a snapshot of the score
+// rather than the player itself
+record Goal(String player, int goalsScored) {}
+
+// a player that doesn't care which broker its goals go through
+class Striker
+{
+    public int goalsScored = 0;
+    public final String name;
+    private final java.util.function.Consumer<? super Goal> goals;
+
+    public Striker(String name, java.util.function.Consumer<? super Goal> goals)
+    {
+        this.name = name;
+        this.goals = goals;
+    }
+
+    public void score()
+    {
+        ++goalsScored;
+        goals.accept(new Goal(name, goalsScored));
+    }
+}
+
+class Coach
+{
+    private final java.util.function.Consumer<String> out;
+
+    public Coach()
+    {
+        this(System.out::println);
+    }
+
+    public Coach(java.util.function.Consumer<String> out)
+    {
+        this.out = out;
+    }
+
+    public void congratulate(Goal goal)
+    {
+        out.accept("The coach congratulates " + goal.player() + " for scoring " + goal.goalsScored() + " goals!");
+    }
+}
+
+// the broker from ReactxEventBroker, kept for comparison
+
+class SynchronousEventBroker<T> extends Observable<T>
+{
+    private List<Observer<? super T>> observers = new ArrayList<>();
+
+    @Override
+    protected void subscribeActual(Observer<? super T> observer)
+    {
+        observers.add(observer);
+    }
+
+    public void publish(T event)
+    {
+        for (Observer<? super T> observer : observers) {
+            observer.onNext(event);
+        }
+    }
+}
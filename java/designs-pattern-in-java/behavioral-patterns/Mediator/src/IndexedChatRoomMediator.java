@@ -0,0 +1,129 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+class IndexedChatRoomMediator
+{
+    public static void main(String[] args)
+    {
+        IndexedChatRoom room = new IndexedChatRoom();
+        Person alice = new Person("Alice");
+        Person bob = new Person("Bob");
+        Person charlie = new Person("Charlie");
+
+        room.join(alice);
+        room.join(bob);
+        room.join(charlie);
+
+        alice.privateMessage("Charlie", "Hi Charlie!");
+        room.leave(charlie);
+        alice.privateMessage("Charlie", "Are you still there?");
+        bob.say("Bye everyone!");
+
+        System.out.println();
+        benchmark();
+    }
+
+    private static final int PARTICIPANTS = 1_000_000;
+
+    private static void benchmark()
+    {
+        LongAdder delivered = new LongAdder();
+        String[] names = new String[PARTICIPANTS];
+        IndexedChatRoom indexed = new IndexedChatRoom();
+        // the original room from ChatRoomMediator, which scans for the recipient
+        ChatRoom linear = new ChatRoom();
+        for (int i = 0; i < PARTICIPANTS; i++) {
+            names[i] = "Person #" + i;
+            indexed.add(new CountingPerson(names[i], delivered));
+            linear.add(new CountingPerson(names[i], delivered));
+        }
+
+        System.out.printf("%,d participants%n", PARTICIPANTS);
+        for (int round = 0; round < 3; round++) {
+            int messages = 200;
+            long start = System.nanoTime();
+            for (int i = 0; i < messages; i++)
+                linear.message("Alice", names[(i * 7919) % PARTICIPANTS], "Hi!");
+            double linearRate = messages / ((System.nanoTime() - start) / 1e9);
+
+            messages = 10_000_000;
+            start = System.nanoTime();
+            for (int i = 0; i < messages; i++)
+                indexed.message("Alice", names[(int) ((i * 7919L) % PARTICIPANTS)], "Hi!");
+            double indexedRate = messages / ((System.nanoTime() - start) / 1e9);
+
+            int threads = Runtime.getRuntime().availableProcessors();
+            int perThread = messages / threads;
+            List<Thread> workers = new ArrayList<>();
+            start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                workers.add(Thread.ofPlatform().start(() -> {
+                    for (int i = 0; i < perThread; i++)
+                        indexed.message("Alice", names[(int) ((i * 7919L + offset) % PARTICIPANTS)], "Hi!");
+                }));
+            }
+            for (Thread worker : workers) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            double parallelRate = perThread * threads / ((System.nanoTime() - start) / 1e9);
+
+            System.out.printf("  linear scan %,12.0f msg/s   indexed %,14.0f msg/s   indexed, %d threads %,14.0f msg/s%n",
+                linearRate, indexedRate, threads, parallelRate);
+        }
+    }
+}
+
+class IndexedChatRoom implements Room
+{
+    // keyed by name, so private messages don't have to look at everyone
+    private Map<String, Person> participants = new ConcurrentHashMap<>();
+
+    public void join(Person p)
+    {
+        String joinMsg = p.name + " has joined the room.";
+        broadcast("room", joinMsg);
+
+        add(p);
+    }
+
+    // joins without the announcement, handy for filling up large rooms
+    public void add(Person p)
+    {
+        if (participants.putIfAbsent(p.name, p) != null)
+            throw new IllegalArgumentException(p.name + " is already in the room");
+        p.room = this;
+    }
+
+    public void leave(Person p)
+    {
+        if (!participants.remove(p.name, p)) return;
+        p.room = null;
+
+        String leaveMsg = p.name + " has left the room.";
+        broadcast("room", leaveMsg);
+    }
+
+    @Override
+    public void broadcast(String source, String message)
+    {
+        for (Person p : participants.values()) {
+            if (!p.name.equals(source)) // validating that the person is not broadcasting to themself
+                p.receive(source, message);
+        }
+    }
+
+    @Override
+    public void message(String from, String to, String message)
+    {
+        Person p = participants.get(to);
+        if (p != null) p.receive(from, message);
+    }
+}
@@ -0,0 +1,447 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+class MappedLogChatRoomMediator
+{
+    public static void main(String[] args) throws Exception
+    {
+        Path directory = Files.createTempDirectory("chat-log");
+        try {
+            try (SegmentedMessageLog log = new SegmentedMessageLog(directory, 1 << 20)) {
+                MappedLogChatRoom room = new MappedLogChatRoom(log);
+                Person alice = new Person("Alice");
+                Person bob = new Person("Bob");
+
+                room.join(alice, 0);
+                room.join(bob, 0);
+
+                alice.say("Hello");
+                bob.say("Hi there!");
+                alice.privateMessage("Bob", "Where's Charlie?");
+
+                // Charlie comes in late and gets the last three messages meant for him
+                Person charlie = new Person("Charlie");
+                room.join(charlie, 3);
+                charlie.say("Hi everyone!");
+            }
+
+            // the log survives a restart, as long as it's opened with the same segment size
+            try (SegmentedMessageLog log = new SegmentedMessageLog(directory, 1 << 20)) {
+                System.out.println("Messages on disk after reopening: " + log.next());
+            }
+            try (SegmentedMessageLog log = new SegmentedMessageLog(directory, 1 << 16)) {
+                System.out.println("Reopened with 64 KB segments: " + log.next());
+            } catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage());
+            }
+        } finally {
+            delete(directory);
+        }
+
+        System.out.println();
+        benchmark();
+    }
+
+    private static final int MESSAGES = 5_000_000;
+
+    private static void benchmark() throws IOException
+    {
+        Path directory = Files.createTempDirectory("chat-log-benchmark");
+        try (SegmentedMessageLog log = new SegmentedMessageLog(directory, 64 << 20)) {
+            String[] senders = new String[1000];
+            for (int i = 0; i < senders.length; i++)
+                senders[i] = "Person #" + i;
+
+            long startMillis = System.currentTimeMillis();
+            long start = System.nanoTime();
+            for (int i = 0; i < MESSAGES; i++)
+                log.append(senders[i % senders.length], null, "Message number " + i);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("write:  %,12.0f msg/s  %,8.1f MB/s  (%,d segments)%n",
+                MESSAGES / seconds, log.bytes() / seconds / 1e6, log.segments());
+
+            start = System.nanoTime();
+            log.flush();
+            System.out.printf("force:  %,12.1f ms%n", (System.nanoTime() - start) / 1e6);
+
+            for (int round = 0; round < 3; round++) {
+                long[] bytes = new long[1];
+                start = System.nanoTime();
+                log.replay(0, m -> bytes[0] += m.text().remaining());
+                seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("replay: %,12.0f msg/s  %,8.1f MB/s of text%n",
+                    MESSAGES / seconds, bytes[0] / seconds / 1e6);
+            }
+
+            // the messages written in the second half of the write run
+            long endMillis = log.read(log.next() - 1).timestamp();
+            long middle = startMillis + (endMillis - startMillis) / 2;
+            start = System.nanoTime();
+            long from = log.sequenceAt(middle);
+            System.out.printf("by time: %,d messages written in the second half, found in %,.1f us%n",
+                log.next() - from, (System.nanoTime() - start) / 1e3);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static void delete(Path directory) throws IOException
+    {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+}
+
+// a zero-copy view of a single record in the log
+class MessageView
+{
+    private final ByteBuffer record;
+
+    MessageView(ByteBuffer record)
+    {
+        this.record = record;
+    }
+
+    public long sequence()
+    {
+        return record.getLong(SegmentedMessageLog.SEQUENCE);
+    }
+
+    public long timestamp()
+    {
+        return record.getLong(SegmentedMessageLog.TIMESTAMP);
+    }
+
+    public String sender()
+    {
+        return decode(SegmentedMessageLog.HEADER, senderLength());
+    }
+
+    // null for broadcasts
+    public String recipient()
+    {
+        int length = record.getShort(SegmentedMessageLog.RECIPIENT_LENGTH);
+        return length < 0 ? null : decode(SegmentedMessageLog.HEADER + senderLength(), length);
+    }
+
+    // the raw UTF-8 bytes of the text, still backed by the mapped file
+    public ByteBuffer text()
+    {
+        int offset = SegmentedMessageLog.HEADER + senderLength()
+            + Math.max(0, record.getShort(SegmentedMessageLog.RECIPIENT_LENGTH));
+        return record.slice(offset, record.limit() - offset);
+    }
+
+    public String textAsString()
+    {
+        return StandardCharsets.UTF_8.decode(text()).toString();
+    }
+
+    private int senderLength()
+    {
+        return record.getShort(SegmentedMessageLog.SENDER_LENGTH);
+    }
+
+    private String decode(int offset, int length)
+    {
+        return StandardCharsets.UTF_8.decode(record.slice(offset, length)).toString();
+    }
+}
+
+// append-only message log split into memory-mapped segment files; each segment is named after
+// the sequence number of its first record and starts with its own size, followed by records like
+// [int length][long sequence][long timestamp][short sender][short recipient, -1 if none][utf-8 sender, recipient, text]
+class SegmentedMessageLog implements AutoCloseable
+{
+    static final int LENGTH = 0, SEQUENCE = 4, TIMESTAMP = 12,
+        SENDER_LENGTH = 20, RECIPIENT_LENGTH = 22, HEADER = 24;
+    // where the first record of a segment goes, after the segment size
+    static final int SEGMENT_HEADER = Integer.BYTES;
+
+    private static class Segment
+    {
+        final Path file;
+        final long firstSequence;
+        final MappedByteBuffer buffer;
+        // record positions, indexed by sequence - firstSequence
+        int[] positions = new int[1024];
+        int count = 0;
+
+        Segment(Path file, long firstSequence, int size) throws IOException
+        {
+            this.file = file;
+            this.firstSequence = firstSequence;
+            try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+        }
+
+        int end()
+        {
+            if (count == 0) return SEGMENT_HEADER;
+            int last = positions[count - 1];
+            return last + buffer.getInt(last + LENGTH);
+        }
+
+        void index(int position)
+        {
+            if (count == positions.length)
+                positions = Arrays.copyOf(positions, count * 2);
+            positions[count++] = position;
+        }
+
+        ByteBuffer record(long sequence)
+        {
+            int position = positions[(int) (sequence - firstSequence)];
+            return buffer.slice(position, buffer.getInt(position + LENGTH)).asReadOnlyBuffer();
+        }
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final List<Segment> segments = new ArrayList<>();
+    private long next = 0;
+    private long bytes = 0;
+
+    public SegmentedMessageLog(Path directory, int segmentSize) throws IOException
+    {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        recover();
+    }
+
+    // maps existing segments and rebuilds their index by walking the records; the records
+    // can only be found again with the segment size they were written with
+    private void recover() throws IOException
+    {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(f -> f.getFileName().toString().endsWith(".log"))
+                .sorted(Comparator.comparing(Path::getFileName))
+                .toList();
+        }
+        for (int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            // checked before mapping, which would quietly grow a smaller file
+            if (Files.size(file) != segmentSize)
+                throw new IllegalArgumentException(file.getFileName() + " has " + Files.size(file)
+                    + " bytes, but the log was opened with segments of " + segmentSize);
+            String name = file.getFileName().toString();
+            Segment segment = new Segment(file,
+                Long.parseLong(name.substring(0, name.length() - 4)), segmentSize);
+            // a crash right after roll() created the newest segment can leave its size unwritten,
+            // nothing was appended to it yet, so it is simply set up again
+            if (i == files.size() - 1 && segment.buffer.getInt(0) == 0)
+                segment.buffer.putInt(0, segmentSize);
+            if (segment.buffer.getInt(0) != segmentSize)
+                throw new IllegalArgumentException(name + " was written with segments of "
+                    + segment.buffer.getInt(0) + " bytes, not " + segmentSize);
+            int position = SEGMENT_HEADER;
+            while (position + HEADER <= segmentSize) {
+                int length = segment.buffer.getInt(position + LENGTH);
+                // zero marks the end, anything else that can't be a record is treated the same
+                // rather than trusted to point somewhere inside the segment
+                if (length < HEADER || position + length > segmentSize) break;
+                segment.index(position);
+                position += length;
+            }
+            segments.add(segment);
+            next = segment.firstSequence + segment.count;
+            bytes += position - SEGMENT_HEADER;
+        }
+    }
+
+    public synchronized long append(String sender, String recipient, String text)
+    {
+        byte[] senderBytes = sender.getBytes(StandardCharsets.UTF_8);
+        byte[] recipientBytes = recipient == null ? null : recipient.getBytes(StandardCharsets.UTF_8);
+        byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
+        int length = HEADER + senderBytes.length
+            + (recipientBytes == null ? 0 : recipientBytes.length) + textBytes.length;
+        if (SEGMENT_HEADER + length + HEADER > segmentSize)
+            throw new IllegalArgumentException("Message too large for a segment");
+
+        Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        // keeping a zeroed header after the last record marks the end of the segment
+        if (segment == null || segment.end() + length + HEADER > segmentSize)
+            segment = roll();
+
+        int position = segment.end();
+        ByteBuffer buffer = segment.buffer;
+        buffer.putLong(position + SEQUENCE, next);
+        buffer.putLong(position + TIMESTAMP, System.currentTimeMillis());
+        buffer.putShort(position + SENDER_LENGTH, (short) senderBytes.length);
+        buffer.putShort(position + RECIPIENT_LENGTH,
+            (short) (recipientBytes == null ? -1 : recipientBytes.length));
+        int offset = position + HEADER;
+        buffer.put(offset, senderBytes);
+        offset += senderBytes.length;
+        if (recipientBytes != null) {
+            buffer.put(offset, recipientBytes);
+            offset += recipientBytes.length;
+        }
+        buffer.put(offset, textBytes);
+        // the length goes last, so a torn write is never picked up by recover()
+        buffer.putInt(position + LENGTH, length);
+
+        segment.index(position);
+        bytes += length;
+        return next++;
+    }
+
+    private Segment roll()
+    {
+        try {
+            Segment segment = new Segment(
+                directory.resolve(String.format("%020d.log", next)), next, segmentSize);
+            segment.buffer.putInt(0, segmentSize);
+            segments.add(segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public synchronized long next()
+    {
+        return next;
+    }
+
+    // the oldest message still in the log
+    public synchronized long first()
+    {
+        return segments.isEmpty() ? next : segments.get(0).firstSequence;
+    }
+
+    public synchronized long bytes()
+    {
+        return bytes;
+    }
+
+    public synchronized int segments()
+    {
+        return segments.size();
+    }
+
+    // the first sequence number written at or after the given time
+    public synchronized long sequenceAt(long timestampMillis)
+    {
+        long low = first(), high = next;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (new MessageView(record(middle)).timestamp() < timestampMillis) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    private ByteBuffer record(long sequence)
+    {
+        int low = 0, high = segments.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (segments.get(middle).firstSequence <= sequence) low = middle;
+            else high = middle - 1;
+        }
+        return segments.get(low).record(sequence);
+    }
+
+    public synchronized MessageView read(long sequence)
+    {
+        if (sequence < 0 || sequence >= next)
+            throw new IndexOutOfBoundsException("No message " + sequence);
+        return new MessageView(record(sequence));
+    }
+
+    // hands out views of everything from `from` up to what was written when the replay started
+    public void replay(long from, Consumer<MessageView> consumer)
+    {
+        long to = next();
+        for (long sequence = from; sequence < to; sequence++)
+            consumer.accept(read(sequence));
+    }
+
+    public synchronized void flush()
+    {
+        for (Segment segment : segments) segment.buffer.force();
+    }
+
+    @Override
+    public void close()
+    {
+        flush();
+    }
+}
+
+class MappedLogChatRoom implements Room
+{
+    // how far back a newcomer's replay looks, so a quiet participant joining a huge log
+    // doesn't walk all of it looking for messages meant for them
+    static final int REPLAY_WINDOW = 10_000;
+
+    private Map<String, Person> participants = new ConcurrentHashMap<>();
+    private final SegmentedMessageLog log;
+
+    public MappedLogChatRoom(SegmentedMessageLog log)
+    {
+        this.log = log;
+    }
+
+    // replays up to `recentMessages` of the history the newcomer is allowed to see, out of the
+    // last REPLAY_WINDOW messages still in the log, newest last, then announces them
+    public void join(Person p, int recentMessages)
+    {
+        List<MessageView> visible = new ArrayList<>();
+        long oldest = Math.max(log.first(), log.next() - REPLAY_WINDOW);
+        for (long seq = log.next() - 1; seq >= oldest && visible.size() < recentMessages; seq--) {
+            MessageView m = log.read(seq);
+            String recipient = m.recipient();
+            if (recipient == null ? !m.sender().equals(p.name) : recipient.equals(p.name))
+                visible.add(m);
+        }
+        for (MessageView m : visible.reversed())
+            p.receive(m.sender(), m.textAsString() + " (replayed)");
+
+        String joinMsg = p.name + " has joined the room.";
+        broadcast("room", joinMsg);
+
+        p.room = this;
+        participants.put(p.name, p);
+    }
+
+    @Override
+    public void broadcast(String source, String message)
+    {
+        log.append(source, null, message);
+        for (Person p : participants.values()) {
+            if (!p.name.equals(source)) // validating that the person is not broadcasting to themself
+                p.receive(source, message);
+        }
+    }
+
+    @Override
+    public void message(String from, String to, String message)
+    {
+        log.append(from, to, message);
+        Person p = participants.get(to);
+        if (p != null) p.receive(from, message);
+    }
+}
@@ -0,0 +1,309 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.disposables.Disposable;
+import io.reactivex.rxjava3.functions.Consumer;
+import io.reactivex.rxjava3.processors.FlowableProcessor;
+import io.reactivex.rxjava3.processors.PublishProcessor;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+
+public class PartitionedEventBroker {
+    static final Topic<Goal> GOALS = new Topic<>("goals", Goal.class, Goal::player);
+    static final Topic<Foul> FOULS = new Topic<>("fouls", Foul.class, Foul::player);
+
+    public static void main(String[] args)
+    {
+        try (TopicBroker broker = new TopicBroker(4)) {
+            Striker antony = new Striker("Antony", goal -> broker.publish(GOALS, goal));
+            Striker bruno = new Striker("Bruno", goal -> broker.publish(GOALS, goal));
+            Defender casemiro = new Defender("Casemiro", foul -> broker.publish(FOULS, foul));
+            Defender varane = new Defender("Varane", foul -> broker.publish(FOULS, foul));
+
+            Coach coach = new Coach(line ->
+                System.out.println("[" + Thread.currentThread().getName() + "] " + line));
+            broker.subscribe(GOALS, coach::congratulate);
+            new Referee(broker);
+            // a broken handler doesn't take the others down with it
+            broker.subscribe(GOALS, goal -> {
+                if (goal.goalsScored() == 1) throw new IllegalStateException("The scoreboard is offline");
+            });
+
+            antony.score();
+            bruno.score();
+            casemiro.foul();
+            antony.score();
+            varane.foul();
+            varane.foul();
+        }
+
+        System.out.println();
+        benchmark();
+    }
+
+    private static final Topic<Integer> READINGS = new Topic<>("readings", Integer.class, e -> e >>> 20);
+    private static final int EVENTS = 2_000_000, KEYS = 1000;
+
+    // events for a thousand keys, each handler burning a little CPU, checking that the
+    // events for every key arrive in the order they were published
+    private static void benchmark()
+    {
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%10s %18s %14s   (%d cores)%n", "partitions", "events/s", "out of order", cores);
+
+        for (int partitions = 1; partitions <= 16; partitions *= 2) {
+            double rate = 0;
+            long outOfOrder = 0;
+            for (int round = 0; round < 3; round++) {
+                int[] last = new int[KEYS];
+                LongAdder disorder = new LongAdder();
+                long start;
+                try (TopicBroker broker = new TopicBroker(partitions)) {
+                    broker.subscribe(READINGS, e -> {
+                        int key = e >>> 20, sequence = e & 0xFFFFF;
+                        if (sequence < last[key]) disorder.increment();
+                        last[key] = sequence;
+                        work(e);
+                    });
+
+                    start = System.nanoTime();
+                    for (int i = 0; i < EVENTS; i++)
+                        broker.publish(READINGS, (i % KEYS) << 20 | (i / KEYS));
+                }
+                rate = EVENTS / ((System.nanoTime() - start) / 1e9);
+                outOfOrder = disorder.sum();
+            }
+            System.out.printf("%10d %,18.0f %,14d%n", partitions, rate, outOfOrder);
+        }
+    }
+
+    static volatile long sink;
+
+    private static void work(int e)
+    {
+        long x = e;
+        for (int i = 0; i < 100; i++)
+            x = x * 6364136223846793005L + 1442695040888963407L;
+        sink = x;
+    }
+}
+
+// a named, typed stream of events; the key decides which partition an event goes to, so all
+// events with the same key are handled in the order they were published
+final class Topic<E>
+{
+    final String name;
+    final Class<E> type;
+    final Function<? super E, ?> key;
+
+    public Topic(String name, Class<E> type, Function<? super E, ?> key)
+    {
+        this.name = name;
+        this.type = type;
+        this.key = key;
+    }
+
+    @Override
+    public String toString()
+    {
+        return name + "<" + type.getSimpleName() + ">";
+    }
+}
+
+// events are routed to partitions by topic and key, and every partition is drained by its own
+// single threaded scheduler, so different keys spread over the cores while each key stays in order
+class TopicBroker implements AutoCloseable
+{
+    private static final int CAPACITY = 1024;
+
+    private record Envelope(Topic<?> topic, Object event) {}
+
+    private final Partition[] partitions;
+    private final Map<Topic<?>, List<Consumer<Object>>> handlers = new ConcurrentHashMap<>();
+    private final LongAdder failures = new LongAdder();
+
+    public TopicBroker(int partitionCount)
+    {
+        this(partitionCount, null);
+    }
+
+    // `schedulers` must hand out a scheduler that runs one task at a time, null gives
+    // every partition a thread of its own
+    public TopicBroker(int partitionCount, IntFunction<Scheduler> schedulers)
+    {
+        partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++)
+            partitions[i] = new Partition(i, schedulers);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <E> Disposable subscribe(Topic<E> topic, Consumer<? super E> handler)
+    {
+        Consumer<Object> h = e -> handler.accept((E) e);
+        List<Consumer<Object>> list = handlers.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>());
+        list.add(h);
+        return Disposable.fromAction(() -> list.remove(h));
+    }
+
+    // blocks while the partition already holds CAPACITY unhandled events rather than dropping one,
+    // throws IllegalStateException once the broker has been closed
+    public <E> void publish(Topic<E> topic, E event)
+    {
+        Object key = topic.key.apply(topic.type.cast(event));
+        int hash = (topic.hashCode() * 31 + key.hashCode()) * 0x9E3779B9;
+        partitions[Math.floorMod(hash ^ (hash >>> 16), partitions.length)]
+            .publish(new Envelope(topic, event));
+    }
+
+    // handlers that throw are reported and counted, the other handlers and every later
+    // event on the partition still get through
+    private void dispatch(Envelope envelope)
+    {
+        List<Consumer<Object>> list = handlers.get(envelope.topic());
+        if (list == null) return;
+        for (Consumer<Object> handler : list) {
+            try {
+                handler.accept(envelope.event());
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                failures.increment();
+                System.err.println("A handler of " + envelope.topic() + " failed on "
+                    + envelope.event() + ": " + e);
+            }
+        }
+    }
+
+    public long failures()
+    {
+        return failures.sum();
+    }
+
+    // waits until every published event has been handled, or until the caller is interrupted
+    @Override
+    public void close()
+    {
+        for (Partition partition : partitions)
+            partition.complete();
+        try {
+            for (Partition partition : partitions)
+                partition.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private class Partition
+    {
+        private final FlowableProcessor<Envelope> processor = PublishProcessor.<Envelope>create().toSerialized();
+        // one permit per event the partition may hold, handed back once the event is handled
+        private final Semaphore room = new Semaphore(CAPACITY);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final ExecutorService executor;
+        private volatile boolean completed = false;
+
+        Partition(int index, IntFunction<Scheduler> schedulers)
+        {
+            Scheduler scheduler;
+            if (schedulers == null) {
+                executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "partition-" + index));
+                scheduler = Schedulers.from(executor);
+            } else {
+                executor = null;
+                scheduler = schedulers.apply(index);
+            }
+
+            // the permits keep at most CAPACITY events in here, the buffer only smooths over
+            // observeOn asking for more in batches rather than one event at a time
+            processor
+                .onBackpressureBuffer()
+                .observeOn(scheduler, false, CAPACITY)
+                .doFinally(() -> {
+                    done.countDown();
+                    if (executor != null) executor.shutdown();
+                })
+                .subscribe(envelope -> {
+                    try {
+                        dispatch(envelope);
+                    } finally {
+                        room.release();
+                    }
+                }, error -> {
+                    // nothing hands permits back from here on, so publishers are let through
+                    // to find the partition completed rather than left waiting for good
+                    completed = true;
+                    room.release(CAPACITY);
+                    failures.increment();
+                    System.err.println("Partition " + index + " stopped with " + error);
+                });
+        }
+
+        // the publisher is parked until a permit comes back, it doesn't hold any lock meanwhile;
+        // once the partition is completed nothing hands permits back, so publishing is refused
+        void publish(Envelope envelope)
+        {
+            if (completed)
+                throw new IllegalStateException("The broker has been closed");
+            room.acquireUninterruptibly();
+            if (completed) {
+                room.release();
+                throw new IllegalStateException("The broker has been closed");
+            }
+            processor.onNext(envelope);
+        }
+
+        void complete()
+        {
+            completed = true;
+            processor.onComplete();
+        }
+
+        void await() throws InterruptedException
+        {
+            done.await();
+        }
+    }
+}
+
+record Foul(String player, int fouls) {}
+
+class Defender
+{
+    public int fouls = 0;
+    public final String name;
+    private final java.util.function.Consumer<? super Foul> fouled;
+
+    public Defender(String name, java.util.function.Consumer<? super Foul> fouled)
+    {
+        this.name = name;
+        this.fouled = fouled;
+    }
+
+    public void foul()
+    {
+        ++fouls;
+        fouled.accept(new Foul(name, fouls));
+    }
+}
+
+class Referee
+{
+    public Referee(TopicBroker broker)
+    {
+        broker.subscribe(PartitionedEventBroker.FOULS, foul -> {
+            String card = foul.fouls() >= 2 ? "a red card" : "a yellow card";
+            System.out.println("[" + Thread.currentThread().getName() + "] The referee shows "
+                + foul.player() + " " + card + "!");
+        });
+    }
+}
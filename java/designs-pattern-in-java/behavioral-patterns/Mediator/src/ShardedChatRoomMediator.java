@@ -0,0 +1,254 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+class ShardedChatRoomMediator
+{
+    public static void main(String[] args) throws Exception
+    {
+        try (ShardedChatRoom room = new ShardedChatRoom(4)) {
+            Person alice = new Person("Alice");
+            Person bob = new Person("Bob");
+            Person charlie = new Person("Charlie");
+
+            room.join(alice);
+            room.join(bob);
+
+            alice.say("Hello");
+            bob.say("Hi there!");
+
+            room.join(charlie);
+            charlie.say("Hi everyone!");
+
+            alice.privateMessage("Charlie", "Hi Charlie!");
+            room.awaitDelivery();
+        }
+
+        System.out.println();
+        benchmark();
+    }
+
+    // enough broadcasts for about ten million deliveries per room size
+    private static void benchmark() throws Exception
+    {
+        int shards = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%10s %22s %22s%n", "room size", "single thread (msg/s)",
+            shards + " shards (msg/s)");
+
+        for (int size = 10; size <= 1_000_000; size *= 10) {
+            int messages = Math.max(10, 10_000_000 / size);
+            LongAdder delivered = new LongAdder();
+
+            ChatRoom single = new ChatRoom();
+            for (int i = 0; i < size; i++)
+                single.add(new CountingPerson("Person #" + i, delivered));
+            long start = System.nanoTime();
+            for (int i = 0; i < messages; i++)
+                single.broadcast("Person #0", "Message #" + i);
+            double singleRate = delivered.sum() / ((System.nanoTime() - start) / 1e9);
+
+            delivered.reset();
+            double shardedRate;
+            try (ShardedChatRoom sharded = new ShardedChatRoom(shards)) {
+                for (int i = 0; i < size; i++)
+                    sharded.add(new CountingPerson("Person #" + i, delivered));
+                sharded.awaitDelivery();
+                delivered.reset();
+
+                start = System.nanoTime();
+                for (int i = 0; i < messages; i++)
+                    sharded.broadcast("Person #0", "Message #" + i);
+                sharded.awaitDelivery();
+                shardedRate = delivered.sum() / ((System.nanoTime() - start) / 1e9);
+            }
+
+            System.out.printf("%,10d %,22.0f %,22.0f%n", size, singleRate, shardedRate);
+        }
+    }
+}
+
+// participants are spread over shards, each owned by a single worker thread that
+// delivers the messages queued for it in order, so a sender's messages never overtake
+// each other for any recipient
+class ShardedChatRoom implements Room, AutoCloseable
+{
+    private final Shard[] shards;
+    // names are claimed here on the caller's thread, so a duplicate is rejected right away
+    // rather than being dropped later on by the shard
+    private final Map<String, Person> members = new ConcurrentHashMap<>();
+    private final LongAdder failures = new LongAdder();
+
+    public ShardedChatRoom(int shardCount)
+    {
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard("chat-shard-" + i, failures);
+        }
+    }
+
+    private Shard shardOf(String name)
+    {
+        return shards[Math.floorMod(name.hashCode(), shards.length)];
+    }
+
+    public void join(Person p)
+    {
+        claim(p);
+        String joinMsg = p.name + " has joined the room.";
+        broadcast("room", joinMsg);
+
+        shardOf(p.name).submit(s -> s.participants.put(p.name, p));
+    }
+
+    // joins without the announcement, handy for filling up large rooms
+    public void add(Person p)
+    {
+        claim(p);
+        shardOf(p.name).submit(s -> s.participants.put(p.name, p));
+    }
+
+    private void claim(Person p)
+    {
+        if (members.putIfAbsent(p.name, p) != null)
+            throw new IllegalArgumentException(p.name + " is already in the room");
+        p.room = this;
+    }
+
+    public void leave(Person p)
+    {
+        if (!members.remove(p.name, p)) return;
+        p.room = null;
+
+        shardOf(p.name).submit(s -> {
+            s.participants.remove(p.name);
+            broadcast("room", p.name + " has left the room.");
+        });
+    }
+
+    @Override
+    public void broadcast(String source, String message)
+    {
+        for (Shard shard : shards) {
+            shard.submit(s -> {
+                for (Person p : s.participants.values()) {
+                    if (!p.name.equals(source)) // validating that the person is not broadcasting to themself
+                        deliver(p, source, message);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void message(String from, String to, String message)
+    {
+        shardOf(to).submit(s -> {
+            Person p = s.participants.get(to);
+            if (p != null) deliver(p, from, message);
+        });
+    }
+
+    // a participant that throws is reported and counted, everybody after it in the shard
+    // still gets the message
+    private void deliver(Person p, String from, String message)
+    {
+        try {
+            p.receive(from, message);
+        } catch (RuntimeException e) {
+            failures.increment();
+            System.err.println(p.name + " failed on \"" + message + "\" from " + from + ": " + e);
+        }
+    }
+
+    public long failures()
+    {
+        return failures.sum();
+    }
+
+    // waits until everything submitted so far has been delivered
+    public void awaitDelivery() throws InterruptedException
+    {
+        CountDownLatch latch = new CountDownLatch(shards.length);
+        for (Shard shard : shards) {
+            shard.submit(s -> latch.countDown());
+        }
+        latch.await();
+    }
+
+    @Override
+    public void close()
+    {
+        for (Shard shard : shards) {
+            shard.submit(s -> s.running = false);
+        }
+        try {
+            for (Shard shard : shards) {
+                shard.worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Shard
+    {
+        private final BlockingQueue<java.util.function.Consumer<Shard>> queue =
+            new LinkedBlockingQueue<>();
+        // only ever touched by the worker thread
+        private final Map<String, Person> participants = new LinkedHashMap<>();
+        private final Thread worker;
+        private final LongAdder failures;
+        private boolean running = true;
+
+        Shard(String name, LongAdder failures)
+        {
+            this.failures = failures;
+            worker = new Thread(this::run, name);
+            worker.start();
+        }
+
+        void submit(java.util.function.Consumer<Shard> task)
+        {
+            queue.add(task);
+        }
+
+        // a task that throws must not take the worker down with it, or everything queued
+        // after it, including the latches of awaitDelivery() and close(), would never run
+        private void run()
+        {
+            try {
+                while (running) {
+                    java.util.function.Consumer<Shard> task = queue.take();
+                    try {
+                        task.accept(this);
+                    } catch (RuntimeException e) {
+                        failures.increment();
+                        System.err.println(worker.getName() + " failed on a task: " + e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
+
+// a participant that only counts, so the benchmark measures the mediator and not stdout
+class CountingPerson extends Person
+{
+    private final LongAdder delivered;
+
+    public CountingPerson(String name, LongAdder delivered) {
+        super(name);
+        this.delivered = delivered;
+    }
+
+    @Override
+    public void receive(String sender, String message)
+    {
+        delivered.increment();
+    }
+}
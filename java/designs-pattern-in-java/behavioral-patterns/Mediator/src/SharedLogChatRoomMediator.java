@@ -0,0 +1,210 @@
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+
+class SharedLogChatRoomMediator
+{
+    public static void main(String[] args)
+    {
+        SharedLogChatRoom room = new SharedLogChatRoom(4);
+        LogReader alice = new LogReader("Alice");
+        LogReader bob = new LogReader("Bob");
+        LogReader charlie = new LogReader("Charlie");
+
+        room.join(alice);
+        room.join(bob);
+
+        alice.say("Hello");
+        bob.say("Hi there!");
+
+        room.join(charlie);
+        charlie.say("Hi everyone!");
+
+        alice.privateMessage("Charlie", "Hi Charlie!");
+
+        for (LogReader p : List.of(alice, bob, charlie)) {
+            for (String s : p.readNew())
+                System.out.println("[" + p.name + "'s chat session] " + s);
+        }
+
+        System.out.println();
+        benchmark();
+    }
+
+    private static final int PARTICIPANTS = 10_000;
+
+    private static void benchmark()
+    {
+        // a chat log per participant can't hold a million messages for 10K people,
+        // so it is measured with fewer messages and extrapolated
+        int messages = 500;
+        long before = usedHeap();
+        List<LoggingPerson> people = new ArrayList<>();
+        for (int i = 0; i < PARTICIPANTS; i++)
+            people.add(new LoggingPerson("Person #" + i));
+        for (int m = 0; m < messages; m++) {
+            String message = "Message #" + m;
+            for (LoggingPerson p : people)
+                if (p != people.get(0)) p.receive(people.get(0).name, message);
+        }
+        long perParticipantLog = usedHeap() - before;
+        Reference.reachabilityFence(people);
+        System.out.printf("%,d participants, chat log per participant%n", PARTICIPANTS);
+        System.out.printf("  %,d messages: %,.1f MB, so about %,.0f MB for 1,000,000 messages%n",
+            messages, perParticipantLog / 1e6, perParticipantLog / 1e6 * (1_000_000 / messages));
+
+        messages = 1_000_000;
+        for (int retention : new int[] { 10_000, 100_000, 1_000_000 }) {
+            before = usedHeap();
+            SharedLogChatRoom room = new SharedLogChatRoom(retention);
+            List<LogReader> participants = new ArrayList<>();
+            for (int i = 0; i < PARTICIPANTS; i++) {
+                LogReader p = new LogReader("Person #" + i);
+                room.add(p);
+                participants.add(p);
+            }
+            for (int m = 0; m < messages; m++)
+                participants.get(m % PARTICIPANTS).say("Message #" + m);
+            long shared = usedHeap() - before;
+            Reference.reachabilityFence(room);
+            System.out.printf("%,d participants, shared log keeping %,d messages%n",
+                PARTICIPANTS, retention);
+            System.out.printf("  %,d messages: %,.1f MB (%d messages readable by Person #1)%n",
+                messages, shared / 1e6, participants.get(1).readNew().size());
+        }
+    }
+
+    private static long usedHeap()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
+
+// every message is stored once, in a ring that keeps the last `capacity` of them
+class MessageLog
+{
+    private final String[] senders, recipients, texts;
+    private long next = 0;
+
+    public MessageLog(int capacity)
+    {
+        senders = new String[capacity];
+        recipients = new String[capacity];
+        texts = new String[capacity];
+    }
+
+    // returns the sequence number of the appended message
+    public synchronized long append(String sender, String recipient, String text)
+    {
+        int i = (int) (next % texts.length);
+        senders[i] = sender;
+        recipients[i] = recipient;
+        texts[i] = text;
+        return next++;
+    }
+
+    public synchronized long next()
+    {
+        return next;
+    }
+
+    public synchronized long oldest()
+    {
+        return Math.max(0, next - texts.length);
+    }
+
+    // adds the messages from `from` onwards that `reader` is allowed to see, older ones
+    // are gone, and returns where to continue reading next time
+    public synchronized long read(long from, String reader, List<String> result)
+    {
+        for (long seq = Math.max(from, oldest()); seq < next; seq++) {
+            int i = (int) (seq % texts.length);
+            boolean visible = recipients[i] == null
+                ? !senders[i].equals(reader)
+                : recipients[i].equals(reader);
+            if (visible)
+                result.add(senders[i] + ": '" + texts[i] + "'");
+        }
+        return next;
+    }
+}
+
+// the room only keeps the log, participants come back for their messages on their own
+class SharedLogChatRoom implements Room
+{
+    private final MessageLog log;
+
+    public SharedLogChatRoom(int retainedMessages)
+    {
+        log = new MessageLog(retainedMessages);
+    }
+
+    public void join(LogReader p)
+    {
+        String joinMsg = p.name + " has joined the room.";
+        broadcast("room", joinMsg);
+
+        add(p);
+    }
+
+    // joins without the announcement, handy for filling up large rooms
+    public void add(LogReader p)
+    {
+        p.room = this;
+        p.history = this;
+        p.cursor = log.next();
+    }
+
+    @Override
+    public void broadcast(String source, String message)
+    {
+        log.append(source, null, message);
+    }
+
+    @Override
+    public void message(String from, String to, String message)
+    {
+        log.append(from, to, message);
+    }
+
+    List<String> read(LogReader p)
+    {
+        List<String> messages = new ArrayList<>();
+        p.cursor = log.read(p.cursor, p.name, messages);
+        return messages;
+    }
+}
+
+// nothing gets delivered to a reader, it asks the room for whatever is new instead
+class LogReader extends Person
+{
+    SharedLogChatRoom history;
+    // sequence number of the first message this person hasn't read yet
+    long cursor;
+
+    public LogReader(String name) {
+        super(name);
+    }
+
+    public List<String> readNew()
+    {
+        return history.read(this);
+    }
+}
+
+// the participant from ChatRoomMediator with its own chat log, minus the printing
+class LoggingPerson extends Person
+{
+    public LoggingPerson(String name) {
+        super(name);
+    }
+
+    @Override
+    public void receive(String sender, String message)
+    {
+        String s = sender + ": '" + message + "'";
+        chatLog.add(s);
+    }
+}
@@ -0,0 +1,193 @@
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+class DeltaHistoryMemento {
+    public static void main(String[] args) {
+        DeltaHistoryAccount account = new DeltaHistoryAccount(100, 1 << 10, 16);
+        long t1 = account.deposit(50);
+        long t2 = account.deposit(25);
+        account.withdraw(75);
+        System.out.println(account);
+
+        account.restore(t1);
+        System.out.println(account);
+
+        account.restore(t2);
+        System.out.println(account);
+
+        account.undo();
+        System.out.println("Undo: " + account);
+        account.redo();
+        System.out.println("Redo: " + account);
+
+        // a new operation after an undo throws away what could have been redone
+        account.undo();
+        account.deposit(1);
+        System.out.println("Can redo after a new deposit: " + account.canRedo());
+
+        // the history has room for a couple of thousand operations, older ones are forgotten
+        for (int i = 0; i < 4000; i++)
+            account.deposit(1);
+        try {
+            account.restore(t1);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+
+        System.out.println();
+        benchmark();
+    }
+
+    static volatile long sink;
+
+    private static void benchmark() {
+        System.out.printf("%12s %22s %22s %14s%n", "operations", "token objects (MB)",
+            "delta history (MB)", "restore (ns)");
+        for (int operations = 1_000_000; operations <= 10_000_000; operations *= 10) {
+            long before = usedHeap();
+            // the account from BankAccountMemento
+            BankAccount tokens = new BankAccount(100);
+            List<BankAccountToken> kept = new ArrayList<>();
+            for (int i = 0; i < operations; i++)
+                kept.add((i & 1) == 0 ? tokens.deposit(i & 255) : tokens.withdraw(i & 127));
+            double tokenHeap = (usedHeap() - before) / 1e6;
+            Reference.reachabilityFence(kept);
+            kept = null;
+
+            before = usedHeap();
+            DeltaHistoryAccount account = new DeltaHistoryAccount(100, operations, 64);
+            for (int i = 0; i < operations; i++) {
+                if ((i & 1) == 0) account.deposit(i & 255);
+                else account.withdraw(i & 127);
+            }
+            double deltaHeap = (usedHeap() - before) / 1e6;
+
+            SplittableRandom random = new SplittableRandom(1);
+            long start = 0;
+            for (int round = 0; round < 2; round++) {
+                start = System.nanoTime();
+                for (int i = 0; i < 1_000_000; i++) {
+                    account.restore(random.nextLong(account.oldest(), account.latest() + 1));
+                    sink += account.getBalance();
+                }
+            }
+            double restore = (System.nanoTime() - start) / 1e6;
+            Reference.reachabilityFence(account);
+
+            System.out.printf("%,12d %,22.1f %,22.1f %,14.1f%n", operations,
+                tokenHeap, deltaHeap, restore);
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
+
+// every operation appends the change it made to a ring of deltas, and every `interval`
+// operations the balance itself is written down too, so any point in the retained history
+// is at most `interval` additions away from a snapshot; a token is just the position in
+// that history, a plain long rather than an object
+class DeltaHistoryAccount
+{
+    private int balance;
+
+    private final long[] deltas;
+    private final long[] snapshots;
+    private final int interval;
+    // `current` is the version the account is at, `latest` the newest one that can be redone,
+    // and `oldest` the first one whose snapshot and deltas haven't been overwritten
+    private long current = 0, latest = 0, oldest = 0;
+
+    // remembers at least the last `retention` operations, rounded up to a power of two
+    public DeltaHistoryAccount(int balance, int retention, int interval) {
+        if (Integer.bitCount(interval) != 1)
+            throw new IllegalArgumentException("The snapshot interval must be a power of two");
+        this.balance = balance;
+        this.interval = interval;
+        // one window more than needed, for the one that's being filled
+        int windows = Integer.highestOneBit(Math.max(retention / interval, 1)) << 1;
+        deltas = new long[windows * interval];
+        snapshots = new long[windows];
+        snapshots[0] = balance;
+    }
+
+    public long deposit(int amount) {
+        return apply(amount);
+    }
+
+    public long withdraw(int amount) {
+        return apply(-amount);
+    }
+
+    private long apply(int delta) {
+        balance += delta;
+        current++;
+        latest = current;
+        // the slot held the delta of this version one lap ago, so that version's window can't
+        // be rebuilt anymore; after an undo the lap may reach back less far than an earlier one
+        // did, which is why the mark only ever moves forward
+        long overwritten = current - deltas.length;
+        if (overwritten > 0)
+            oldest = Math.max(oldest, (overwritten / interval + 1) * interval);
+        deltas[(int) (current & (deltas.length - 1))] = delta;
+        if (current % interval == 0)
+            snapshots[(int) (current / interval & (snapshots.length - 1))] = balance;
+        return current;
+    }
+
+    public int getBalance() {
+        return balance;
+    }
+
+    // the oldest version that can still be restored
+    public long oldest() {
+        return oldest;
+    }
+
+    public long latest() {
+        return latest;
+    }
+
+    public void restore(long token) {
+        if (token < oldest || token > latest)
+            throw new IllegalArgumentException("Version " + token + " is no longer in the history");
+        long window = token / interval;
+        long value = snapshots[(int) (window & (snapshots.length - 1))];
+        for (long v = window * interval + 1; v <= token; v++)
+            value += deltas[(int) (v & (deltas.length - 1))];
+        balance = (int) value;
+        current = token;
+    }
+
+    public boolean canUndo() {
+        return current > oldest;
+    }
+
+    public boolean canRedo() {
+        return current < latest;
+    }
+
+    public void undo() {
+        if (!canUndo()) return;
+        balance -= (int) deltas[(int) (current & (deltas.length - 1))];
+        current--;
+    }
+
+    public void redo() {
+        if (!canRedo()) return;
+        current++;
+        balance += (int) deltas[(int) (current & (deltas.length - 1))];
+    }
+
+    @Override
+    public String toString() {
+        return "BankAccount{" +
+                "balance=" + balance +
+                '}';
+    }
+}
@@ -0,0 +1,279 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Reference;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+class MappedMemento {
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("mementos");
+        long t1, t2;
+        try (TokenArchive archive = new TokenArchive(directory, 1 << 20)) {
+            ArchivedAccount account = new ArchivedAccount(100, archive);
+            t1 = account.deposit(50);
+            t2 = account.deposit(25);
+            System.out.println(account);
+
+            account.restore(t1);
+            System.out.println(account);
+        }
+
+        // the history is still there after a restart, and so is the account's last balance
+        try (TokenArchive archive = new TokenArchive(directory, 1 << 20)) {
+            ArchivedAccount account = new ArchivedAccount(archive);
+            System.out.println("Reopened at the newest token: " + account);
+
+            account.restore(t2);
+            System.out.println(account);
+            account.restore(0);
+            System.out.println("Opening balance: " + account);
+        }
+        delete(directory);
+
+        System.out.println();
+        benchmark();
+    }
+
+    private static final long TOKENS = 100_000_000;
+    private static final int RESTORES = 10_000_000;
+
+    static volatile long sink;
+
+    private static void benchmark() throws IOException {
+        // keeping 10M of the BankAccountToken objects from BankAccountMemento on the heap, for
+        // comparison; 100M of them plus the list holding them don't fit into this heap at all
+        long before = usedHeap();
+        List<BankAccountToken> kept = new ArrayList<>();
+        for (int i = 0; i < 10_000_000; i++)
+            kept.add(new BankAccountToken(i));
+        System.out.printf("10,000,000 BankAccountToken objects on the heap: %,.0f MB%n%n",
+            (usedHeap() - before) / 1e6);
+        Reference.reachabilityFence(kept);
+        kept = null;
+
+        Path directory = Files.createTempDirectory("mementos");
+        long start = System.nanoTime();
+        try (TokenArchive archive = new TokenArchive(directory, 1 << 26)) {
+            ArchivedAccount account = new ArchivedAccount(0, archive);
+            for (long i = 0; i < TOKENS; i++) {
+                if ((i & 1) == 0) account.deposit((int) i & 255);
+                else account.withdraw((int) i & 127);
+            }
+        }
+        double write = TOKENS / ((System.nanoTime() - start) / 1e9);
+
+        try (TokenArchive archive = new TokenArchive(directory, 1 << 26)) {
+            ArchivedAccount account = new ArchivedAccount(archive);
+            SplittableRandom random = new SplittableRandom(1);
+            double restore = 0;
+            for (int round = 0; round < 3; round++) {
+                start = System.nanoTime();
+                for (int i = 0; i < RESTORES; i++) {
+                    account.restore(random.nextLong(archive.size()));
+                    sink += account.getBalance();
+                }
+                restore = (double) (System.nanoTime() - start) / RESTORES;
+            }
+
+            long bytes = 0;
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toList())
+                    bytes += Files.size(file);
+            }
+            System.out.printf("%,d tokens in %d segments, %,.0f MB mapped%n",
+                archive.size(), archive.segments(), bytes / 1e6);
+            System.out.printf("%20s %,16.0f%n", "appends/s", write);
+            System.out.printf("%20s %,16.1f%n", "random restore (ns)", restore);
+        }
+        delete(directory);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList())
+                Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+}
+
+// the balance after every operation, appended to memory-mapped segment files outside the heap;
+// every record is an int, so a version's position inside its segment is plain arithmetic and the
+// only index needed is one entry per segment, the mapping that starts at a given version
+class TokenArchive implements AutoCloseable {
+    // each segment starts with the number of tokens written to it, so a reopened archive
+    // knows where its history ends, followed by how many tokens the segment has room for
+    private static final int HEADER = Long.BYTES + Integer.BYTES;
+
+    private final Path directory;
+    private final int segmentTokens;
+    private final int shift;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private MappedByteBuffer last;
+    private long size = 0;
+
+    // segmentTokens must be a power of two, and a segment has to fit into a single mapping
+    public TokenArchive(Path directory, int segmentTokens) throws IOException {
+        if (Integer.bitCount(segmentTokens) != 1 || segmentTokens > (Integer.MAX_VALUE - HEADER) / Integer.BYTES)
+            throw new IllegalArgumentException("Segments must hold a power of two tokens, up to 2 GB");
+        this.directory = directory;
+        this.segmentTokens = segmentTokens;
+        this.shift = Integer.numberOfTrailingZeros(segmentTokens);
+        recover();
+    }
+
+    // segment files are named after the first version they hold, so they have to follow each
+    // other without gaps, and every one but the newest has to be full
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(f -> f.getFileName().toString().endsWith(".tokens"))
+                .sorted(Comparator.comparing(Path::getFileName))
+                .toList();
+        }
+        long segmentBytes = HEADER + (long) segmentTokens * Integer.BYTES;
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (!name.equals(segmentName(size)))
+                throw new IllegalArgumentException("Expected the segment starting at version " + size
+                    + " but found " + name);
+            // mapping a shorter file would quietly grow it to the new segment size
+            if (Files.size(file) != segmentBytes)
+                throw new IllegalArgumentException(name + " wasn't written with segments of "
+                    + segmentTokens + " tokens");
+            MappedByteBuffer segment = map(file);
+            long count = segment.getLong(0);
+            int tokens = segment.getInt(Long.BYTES);
+            // stopping right after append() created the newest segment leaves it empty, perhaps
+            // even without its header; the next append() maps the very same file and starts over
+            if (file == files.getLast() && count == 0 && (tokens == 0 || tokens == segmentTokens))
+                break;
+            if (tokens != segmentTokens)
+                throw new IllegalArgumentException(name + " holds " + tokens
+                    + " tokens per segment, not " + segmentTokens);
+            if (count < 0 || count > segmentTokens || count < segmentTokens && file != files.getLast())
+                throw new IllegalArgumentException(name + " claims to hold " + count + " tokens");
+            segments.add(segment);
+            last = segment;
+            size += count;
+        }
+    }
+
+    private static String segmentName(long firstVersion) {
+        return String.format("%020d.tokens", firstVersion);
+    }
+
+    private MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) segmentTokens * Integer.BYTES);
+        }
+    }
+
+    // returns the new token's version
+    public long append(int balance) {
+        int index = (int) (size & (segmentTokens - 1));
+        if (index == 0) {
+            flush();
+            try {
+                last = map(directory.resolve(segmentName(size)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            last.putInt(Long.BYTES, segmentTokens);
+            segments.add(last);
+        }
+        last.putInt(HEADER + index * Integer.BYTES, balance);
+        // the count goes last, so after the program stops a reopened archive never sees a token
+        // that wasn't written; the operating system writes pages back in any order though, so
+        // after a power loss only the tokens up to the last flush() can be relied on
+        last.putLong(0, index + 1);
+        return size++;
+    }
+
+    // reads straight out of the mapping, there's nothing to deserialize
+    public int balance(long version) {
+        if (version < 0 || version >= size)
+            throw new IllegalArgumentException("Version " + version + " is not in the archive");
+        return segments.get((int) (version >>> shift))
+            .getInt(HEADER + (int) (version & (segmentTokens - 1)) * Integer.BYTES);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public int segments() {
+        return segments.size();
+    }
+
+    // the operating system writes the pages out on its own time, this waits for the newest
+    // segment to be on disk; older ones were flushed when the next segment was started
+    public void flush() {
+        if (last != null) last.force();
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+}
+
+// the account from BankAccountMemento with its tokens kept in an archive: a token is the
+// version of the balance it stands for, and the constructor gets one too
+class ArchivedAccount
+{
+    private final TokenArchive archive;
+    private int balance;
+
+    public ArchivedAccount(int balance, TokenArchive archive) {
+        this.archive = archive;
+        this.balance = balance;
+        archive.append(balance);
+    }
+
+    // continues from the newest token in an archive that already has a history
+    public ArchivedAccount(TokenArchive archive) {
+        this.archive = archive;
+        this.balance = archive.balance(archive.size() - 1);
+    }
+
+    public long deposit(int amount) {
+        balance += amount;
+        return archive.append(balance);
+    }
+
+    public long withdraw(int amount) {
+        balance -= amount;
+        return archive.append(balance);
+    }
+
+    public int getBalance() {
+        return balance;
+    }
+
+    @Override
+    public String toString() {
+        return "BankAccount{" +
+                "balance=" + balance +
+                '}';
+    }
+
+    public void restore(long token) {
+        balance = archive.balance(token);
+    }
+}
@@ -0,0 +1,240 @@
+import java.util.SplittableRandom;
+import java.util.function.UnaryOperator;
+
+class PersistentMemento {
+    public static void main(String[] args) {
+        LedgerAccount account = new LedgerAccount(100);
+        Memento<AccountState> t1 = account.deposit(50);
+        Memento<AccountState> t2 = account.deposit(25);
+        System.out.println(account);
+
+        account.restore(t1);
+        System.out.println(account);
+
+        account.restore(t2);
+        System.out.println(account);
+
+        System.out.println();
+        benchmark();
+    }
+
+    static volatile long sink;
+
+    // a snapshot followed by one change, once as a full copy of an int[] and once on a
+    // persistent vector, for states from 1 KB to 100 MB
+    private static void benchmark() {
+        System.out.printf("%10s %18s %18s %18s %18s%n", "state", "copy snapshot (ns)",
+            "copy write (ns)", "cow snapshot (ns)", "cow write (ns)");
+        SplittableRandom random = new SplittableRandom(1);
+        for (int bytes : new int[] { 1 << 10, 10 << 10, 100 << 10, 1 << 20, 10 << 20, 100 << 20 }) {
+            int size = bytes / Integer.BYTES;
+            int[] values = new int[size];
+            for (int i = 0; i < size; i++)
+                values[i] = i;
+
+            // copying is too slow for as many rounds on the big states
+            int copyRounds = (int) Math.max(10, Math.min(100_000, 1_000_000_000L / bytes));
+            int cowRounds = 1_000_000;
+            double copySnapshot = 0, copyWrite = 0, cowSnapshot = 0, cowWrite = 0;
+            for (int pass = 0; pass < 2; pass++) {
+                int[] mutable = values.clone();
+                System.gc();
+                long start = System.nanoTime();
+                for (int r = 0; r < copyRounds; r++) {
+                    int[] snapshot = mutable.clone();
+                    sink += snapshot[r % size];
+                }
+                copySnapshot = (double) (System.nanoTime() - start) / copyRounds;
+                start = System.nanoTime();
+                for (int r = 0; r < cowRounds; r++)
+                    mutable[random.nextInt(size)] = r;
+                copyWrite = (double) (System.nanoTime() - start) / cowRounds;
+                mutable = null;
+
+                Versioned<IntVector> versioned = new Versioned<>(IntVector.of(values));
+                System.gc();
+                start = System.nanoTime();
+                for (int r = 0; r < cowRounds; r++) {
+                    Memento<IntVector> snapshot = versioned.snapshot();
+                    sink += snapshot.state().size();
+                }
+                cowSnapshot = (double) (System.nanoTime() - start) / cowRounds;
+                start = System.nanoTime();
+                for (int r = 0; r < cowRounds; r++) {
+                    int index = random.nextInt(size), value = r;
+                    versioned.update(v -> v.set(index, value));
+                }
+                cowWrite = (double) (System.nanoTime() - start) / cowRounds;
+            }
+            System.out.printf("%10s %,18.0f %,18.1f %,18.1f %,18.1f%n", human(bytes),
+                copySnapshot, copyWrite, cowSnapshot, cowWrite);
+        }
+    }
+
+    private static String human(int bytes) {
+        return bytes >= 1 << 20 ? (bytes >> 20) + " MB" : (bytes >> 10) + " KB";
+    }
+}
+
+// an opaque token holding a version of some immutable state
+final class Memento<S> {
+    private final S state;
+
+    Memento(S state) {
+        this.state = state;
+    }
+
+    S state() {
+        return state;
+    }
+}
+
+// keeps the current version of an immutable state, so a snapshot only has to remember a
+// reference and restoring one is swapping the root back; this is only safe when every change
+// builds a new state, which persistent data structures make cheap by sharing all the parts
+// that didn't change
+class Versioned<S> {
+    private S root;
+
+    public Versioned(S root) {
+        this.root = root;
+    }
+
+    public S get() {
+        return root;
+    }
+
+    public Memento<S> update(UnaryOperator<S> change) {
+        root = change.apply(root);
+        return snapshot();
+    }
+
+    public Memento<S> snapshot() {
+        return new Memento<>(root);
+    }
+
+    public void restore(Memento<S> memento) {
+        root = memento.state();
+    }
+}
+
+// a persistent vector of ints: a tree of 32-way nodes with the values in the leaves, where
+// changing a value copies only the nodes on the path from the root to its leaf
+final class IntVector {
+    private static final int BITS = 5, WIDTH = 1 << BITS, MASK = WIDTH - 1;
+
+    static final IntVector EMPTY = new IntVector(0, 0, new int[WIDTH]);
+
+    private final int size, shift;
+    // an int[] leaf when shift is zero, an Object[] of children otherwise
+    private final Object root;
+
+    private IntVector(int size, int shift, Object root) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+    }
+
+    // builds the tree bottom up, much faster than appending one value at a time
+    static IntVector of(int[] values) {
+        if (values.length == 0) return EMPTY;
+        Object[] level = new Object[(values.length + MASK) >>> BITS];
+        for (int i = 0; i < level.length; i++) {
+            int[] leaf = new int[WIDTH];
+            System.arraycopy(values, i << BITS, leaf, 0, Math.min(WIDTH, values.length - (i << BITS)));
+            level[i] = leaf;
+        }
+        int shift = 0;
+        while (level.length > 1) {
+            Object[] parents = new Object[(level.length + MASK) >>> BITS];
+            for (int i = 0; i < parents.length; i++) {
+                Object[] node = new Object[WIDTH];
+                System.arraycopy(level, i << BITS, node, 0, Math.min(WIDTH, level.length - (i << BITS)));
+                parents[i] = node;
+            }
+            level = parents;
+            shift += BITS;
+        }
+        return new IntVector(values.length, shift, level[0]);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(index);
+        Object node = root;
+        for (int level = shift; level > 0; level -= BITS)
+            node = ((Object[]) node)[(index >>> level) & MASK];
+        return ((int[]) node)[index & MASK];
+    }
+
+    public IntVector set(int index, int value) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(index);
+        return new IntVector(size, shift, set(root, shift, index, value));
+    }
+
+    public IntVector append(int value) {
+        if (size == 1 << (shift + BITS)) {
+            // the tree is full, so it grows a new root with the old one as its first child
+            Object[] newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            return new IntVector(size + 1, shift + BITS, set(newRoot, shift + BITS, size, value));
+        }
+        return new IntVector(size + 1, shift, set(root, shift, size, value));
+    }
+
+    private static Object set(Object node, int level, int index, int value) {
+        if (level == 0) {
+            int[] leaf = node == null ? new int[WIDTH] : ((int[]) node).clone();
+            leaf[index & MASK] = value;
+            return leaf;
+        }
+        Object[] copy = node == null ? new Object[WIDTH] : ((Object[]) node).clone();
+        int child = (index >>> level) & MASK;
+        copy[child] = set(copy[child], level - BITS, index, value);
+        return copy;
+    }
+}
+
+// the whole state of an account, never changed once built
+record AccountState(int balance, IntVector ledger) {}
+
+// the account from BankAccountMemento with a ledger of every amount deposited or withdrawn,
+// which a full copy per memento would have to duplicate every time
+class LedgerAccount
+{
+    private final Versioned<AccountState> state;
+
+    public LedgerAccount(int balance) {
+        state = new Versioned<>(new AccountState(balance, IntVector.EMPTY));
+    }
+
+    public Memento<AccountState> deposit(int amount) {
+        return state.update(s -> new AccountState(s.balance() + amount, s.ledger().append(amount)));
+    }
+
+    public Memento<AccountState> withdraw(int amount) {
+        return state.update(s -> new AccountState(s.balance() - amount, s.ledger().append(-amount)));
+    }
+
+    public int getBalance() {
+        return state.get().balance();
+    }
+
+    public void restore(Memento<AccountState> token) {
+        state.restore(token);
+    }
+
+    @Override
+    public String toString() {
+        AccountState s = state.get();
+        return "BankAccount{" +
+                "balance=" + s.balance() +
+                ", ledger entries=" + s.ledger().size() +
+                '}';
+    }
+}
@@ -0,0 +1,349 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class AsyncObserver implements Observer<Person> {
+    public static void main(String[] args) throws Exception {
+        new AsyncObserver();
+        System.out.println();
+        benchmark();
+    }
+
+    public AsyncObserver() throws Exception {
+        Person person = new Person();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             Mailbox<Person> mailbox = person.subscribeAsync(
+                 this, 2, OverflowPolicy.DROP_OLDEST, executor)) {
+            for (int i = 1; i < 5; i++) {
+                person.setAge(i);
+            }
+            System.out.println("The setter returned right away");
+            Thread.sleep(500);
+            System.out.println(mailbox);
+        }
+    }
+
+    @Override
+    public void handle(PropertyChangedEventArgs<Person> args) {
+        sleep(100);
+        System.out.println("Person's " + args.getPropertyName()
+        + " changed to " + args.getNewValue());
+    }
+
+    static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final int CHANGES = 2_000;
+
+    // ten fast observers and a slow one taking 1ms per notification
+    private static void benchmark() throws Exception {
+        System.out.printf("%-22s %12s %12s %12s   %s%n",
+            "dispatch", "p50 (us)", "p99 (us)", "max (us)", "slow observer");
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            run("synchronous", null, executor);
+            for (OverflowPolicy policy : OverflowPolicy.values())
+                run("async " + policy, policy, executor);
+        }
+    }
+
+    private static void run(String name, OverflowPolicy policy, Executor executor) {
+        Person person = new Person();
+        Observer<Person> fast = args -> {};
+        Observer<Person> slow = args -> sleep(1);
+
+        Mailbox<Person> slowMailbox = null;
+        for (int i = 0; i < 10; i++) {
+            if (policy == null) person.subscribe(fast);
+            else person.subscribeAsync(fast, 1024, policy, executor);
+        }
+        if (policy == null) person.subscribe(slow);
+        else slowMailbox = person.subscribeAsync(slow, 1024, policy, executor);
+
+        long[] latencies = new long[CHANGES];
+        for (int i = 0; i < CHANGES; i++) {
+            long start = System.nanoTime();
+            person.setAge(i + 1);
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+
+        System.out.printf("%-22s %,12.1f %,12.1f %,12.1f   %s%n", name,
+            latencies[CHANGES / 2] / 1e3,
+            latencies[(int) (CHANGES * 0.99)] / 1e3,
+            latencies[CHANGES - 1] / 1e3,
+            slowMailbox == null ? "" : slowMailbox);
+        person.closeAll();
+    }
+}
+
+class Person extends Observable<Person> {
+    private int age;
+
+    public int getAge() {
+        return age;
+    }
+
+    public void setAge(int age) {
+        if (age == this.age) return;
+        this.age = age;
+        super.propertyChanged(this, "age", age);
+    }
+}
+
+class PropertyChangedEventArgs<T> {
+    private T source;
+    private String propertyName;
+    private Object newValue;
+
+    public PropertyChangedEventArgs(T source,
+                                    String propertyName,
+                                    Object newValue) {
+        this.source = source;
+        this.propertyName = propertyName;
+        this.newValue = newValue;
+    }
+
+    public T getSource() {
+        return source;
+    }
+
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    public Object getNewValue() {
+        return newValue;
+    }
+}
+
+interface Observer<T> {
+    void handle(PropertyChangedEventArgs<T> args);
+}
+
+// what a full mailbox does with one more notification
+enum OverflowPolicy {
+    // discard the oldest queued notification
+    DROP_OLDEST,
+    // make the caller wait until the observer catches up
+    BLOCK,
+    // replace a queued notification for the same property, dropping the oldest otherwise
+    COALESCE
+}
+
+class Observable<T> {
+
+    private final List<Observer<T>> observers = new CopyOnWriteArrayList<>();
+    private final List<Mailbox<T>> mailboxes = new CopyOnWriteArrayList<>();
+
+    public void subscribe(Observer<T> observer) {
+        observers.add(observer);
+    }
+
+    // the observer gets its own bounded queue, drained by a single task on the executor
+    public Mailbox<T> subscribeAsync(Observer<T> observer,
+                                     int capacity,
+                                     OverflowPolicy policy,
+                                     Executor executor) {
+        Mailbox<T> mailbox = new Mailbox<>(this, observer, capacity, policy);
+        mailboxes.add(mailbox);
+        executor.execute(mailbox::drain);
+        return mailbox;
+    }
+
+    void unsubscribe(Mailbox<T> mailbox) {
+        mailboxes.remove(mailbox);
+    }
+
+    public void closeAll() {
+        for (Mailbox<T> mailbox : mailboxes) {
+            mailbox.close();
+        }
+    }
+
+    protected void propertyChanged(T source,
+                                    String propertyName,
+                                    Object newValue) {
+        PropertyChangedEventArgs<T> args =
+            new PropertyChangedEventArgs<>(source, propertyName, newValue);
+        for (Mailbox<T> mailbox : mailboxes) {
+            mailbox.offer(args);
+        }
+        for (Observer<T> observer : observers) {
+            observer.handle(args);
+        }
+    }
+}
+
+// many setters may offer, a single drain loop hands notifications to the observer
+class Mailbox<T> implements AutoCloseable {
+
+    private static class Envelope<T> {
+        PropertyChangedEventArgs<T> args;
+        final long enqueuedAt;
+
+        Envelope(PropertyChangedEventArgs<T> args, long enqueuedAt) {
+            this.args = args;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private final Observable<T> observable;
+    private final Observer<T> observer;
+    private final int capacity;
+    private final OverflowPolicy policy;
+
+    private final ArrayDeque<Envelope<T>> queue = new ArrayDeque<>();
+    private final Map<String, Envelope<T>> queuedByProperty = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private boolean closed = false;
+
+    // lag metrics, guarded by lock
+    private long delivered, dropped, coalesced, failed;
+    private long totalLagNanos, maxLagNanos;
+
+    Mailbox(Observable<T> observable, Observer<T> observer,
+            int capacity, OverflowPolicy policy) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("A mailbox needs room for at least one notification");
+        this.observable = observable;
+        this.observer = observer;
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    void offer(PropertyChangedEventArgs<T> args) {
+        lock.lock();
+        try {
+            if (closed) return;
+
+            if (policy == OverflowPolicy.COALESCE) {
+                Envelope<T> queued = queuedByProperty.get(args.getPropertyName());
+                if (queued != null) {
+                    queued.args = args;
+                    coalesced++;
+                    return;
+                }
+            }
+
+            while (queue.size() >= capacity) {
+                if (policy == OverflowPolicy.BLOCK) {
+                    notFull.awaitUninterruptibly();
+                    if (closed) return;
+                } else {
+                    forget(queue.pollFirst());
+                    dropped++;
+                }
+            }
+
+            Envelope<T> envelope = new Envelope<>(args, System.nanoTime());
+            queue.addLast(envelope);
+            if (policy == OverflowPolicy.COALESCE)
+                queuedByProperty.put(args.getPropertyName(), envelope);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void drain() {
+        while (true) {
+            Envelope<T> envelope;
+            lock.lock();
+            try {
+                while (queue.isEmpty() && !closed)
+                    notEmpty.awaitUninterruptibly();
+                if (closed) return;
+                envelope = queue.pollFirst();
+                forget(envelope);
+                notFull.signal();
+            } finally {
+                lock.unlock();
+            }
+
+            // an observer that throws only loses that one notification, the drain loop keeps
+            // going so blocked setters get room again and later notifications still arrive
+            boolean handled = false;
+            try {
+                observer.handle(envelope.args);
+                handled = true;
+            } catch (RuntimeException e) {
+                System.err.println("An observer failed on " + envelope.args.getPropertyName() + ": " + e);
+            }
+
+            long lag = System.nanoTime() - envelope.enqueuedAt;
+            lock.lock();
+            try {
+                if (!handled) {
+                    failed++;
+                    continue;
+                }
+                delivered++;
+                totalLagNanos += lag;
+                maxLagNanos = Math.max(maxLagNanos, lag);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void forget(Envelope<T> envelope) {
+        if (policy == OverflowPolicy.COALESCE)
+            queuedByProperty.remove(envelope.args.getPropertyName(), envelope);
+    }
+
+    public int pending() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        observable.unsubscribe(this);
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return "Mailbox{" +
+                "pending=" + queue.size() +
+                ", delivered=" + delivered +
+                ", dropped=" + dropped +
+                ", coalesced=" + coalesced +
+                ", failed=" + failed +
+                ", avgLag=" + (delivered == 0 ? 0 : totalLagNanos / delivered / 1_000) + "us" +
+                ", maxLag=" + maxLagNanos / 1_000 + "us" +
+                '}';
+        } finally {
+            lock.unlock();
+        }
+    }
+}
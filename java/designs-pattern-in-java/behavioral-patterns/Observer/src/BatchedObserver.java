@@ -0,0 +1,310 @@
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class BatchedObserver implements Observer<Person> {
+    public static void main(String[] args) throws Exception {
+        new BatchedObserver();
+        System.out.println();
+        benchmark();
+    }
+
+    public BatchedObserver() throws Exception {
+        Person person = new Person();
+        person.subscribe(this);
+
+        System.out.println("Without a batch:");
+        for (int i = 1; i < 5; i++) {
+            person.setAge(i);
+        }
+
+        System.out.println("Within a batch:");
+        Observable.Batch batch = person.beginBatch();
+        try {
+            for (int i = 5; i < 10; i++) {
+                person.setAge(i);
+                person.setName("Person #" + i);
+            }
+        } finally {
+            batch.close();
+        }
+
+        System.out.println("Within a 100ms window:");
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        person.coalesceWithin(Duration.ofMillis(100), scheduler);
+        for (int i = 10; i < 15; i++) {
+            person.setAge(i);
+        }
+        Thread.sleep(200);
+        scheduler.shutdown();
+    }
+
+    @Override
+    public void handle(PropertyChangedEventArgs<Person> args) {
+        System.out.println("Person's " + args.getPropertyName()
+        + " changed to " + args.getNewValue());
+    }
+
+    private static final int CHANGES = 1_000;
+
+    // every round does CHANGES calls to setAge, delivered one by one or as one batch
+    private static void benchmark() {
+        System.out.printf("%9s %18s %18s %16s %16s %14s %14s%n", "observers",
+            "per-change (chg/s)", "batched (chg/s)",
+            "per-change (n/s)", "batched (n/s)",
+            "per-change B/c", "batched B/c");
+
+        for (int observers = 1; observers <= 10_000; observers *= 10) {
+            EagerPerson eager = new EagerPerson();
+            Person batched = new Person();
+            long[] eagerCount = new long[1], batchedCount = new long[1];
+            for (int i = 0; i < observers; i++) {
+                subscribeCounter(eager::subscribe, eagerCount, i);
+                subscribeCounter(batched::subscribe, batchedCount, i);
+            }
+
+            double[] eagerResult = null, batchedResult = null;
+            for (int round = 0; round < 5; round++) {
+                eagerResult = measure(eagerCount, () -> {
+                    for (int i = 1; i <= CHANGES; i++) eager.setAge(eager.getAge() + 1);
+                });
+                batchedResult = measure(batchedCount, () -> {
+                    Observable.Batch batch = batched.beginBatch();
+                    try {
+                        for (int i = 1; i <= CHANGES; i++) batched.setAge(batched.getAge() + 1);
+                    } finally {
+                        batch.close();
+                    }
+                });
+            }
+
+            System.out.printf("%,9d %,18.0f %,18.0f %,16.0f %,16.0f %,14.1f %,14.1f%n", observers,
+                eagerResult[0], batchedResult[0], eagerResult[1], batchedResult[1],
+                eagerResult[2], batchedResult[2]);
+        }
+    }
+
+    // a few different kinds of observers, as a real application would have
+    private static <T> void subscribeCounter(java.util.function.Consumer<Observer<T>> subscribe,
+                                             long[] count, int i) {
+        switch (i % 3) {
+            case 0 -> subscribe.accept(args -> count[0]++);
+            case 1 -> subscribe.accept(args -> count[0] += args.getPropertyName().length() > 0 ? 1 : 0);
+            default -> subscribe.accept(args -> count[0] += args.getNewValue() != null ? 1 : 0);
+        }
+    }
+
+    // returns changes per second, notifications per second and bytes allocated per change
+    private static double[] measure(long[] count, Runnable changes) {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        long notifications = count[0];
+        long bytes = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        changes.run();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        bytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+        notifications = count[0] - notifications;
+
+        return new double[] { CHANGES / seconds, notifications / seconds, (double) bytes / CHANGES };
+    }
+}
+
+class Person extends Observable<Person> {
+    private int age;
+    private String name;
+
+    public int getAge() {
+        return age;
+    }
+
+    public void setAge(int age) {
+        if (age == this.age) return;
+        this.age = age;
+        super.propertyChanged(this, "age", age);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        if (name.equals(this.name)) return;
+        this.name = name;
+        super.propertyChanged(this, "name", name);
+    }
+}
+
+class PropertyChangedEventArgs<T> {
+    private T source;
+    private String propertyName;
+    private Object newValue;
+
+    public PropertyChangedEventArgs(T source,
+                                    String propertyName,
+                                    Object newValue) {
+        this.source = source;
+        this.propertyName = propertyName;
+        this.newValue = newValue;
+    }
+
+    public T getSource() {
+        return source;
+    }
+
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    public Object getNewValue() {
+        return newValue;
+    }
+}
+
+interface Observer<T> {
+    void handle(PropertyChangedEventArgs<T> args);
+}
+
+// changes made within a batch or a time window are coalesced per source and property,
+// and every observer gets the very same event carrying the final value
+class Observable<T> {
+
+    public interface Batch extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final List<Observer<T>> observers = new CopyOnWriteArrayList<>();
+    private final Map<T, Map<String, Object>> pending = new LinkedHashMap<>();
+    private int batchDepth = 0;
+    private Duration window;
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> scheduledFlush;
+
+    public void subscribe(Observer<T> observer) {
+        observers.add(observer);
+    }
+
+    // batches can be nested, changes are delivered when the outermost one closes;
+    // closing the same batch again does nothing
+    public Batch beginBatch() {
+        synchronized (this) {
+            batchDepth++;
+        }
+        AtomicBoolean closed = new AtomicBoolean();
+        return () -> {
+            if (closed.compareAndSet(false, true)) endBatch();
+        };
+    }
+
+    // from now on changes are held back and flushed once the window elapses
+    public synchronized void coalesceWithin(Duration window,
+                                            ScheduledExecutorService scheduler) {
+        this.window = window;
+        this.scheduler = scheduler;
+    }
+
+    private void endBatch() {
+        synchronized (this) {
+            if (--batchDepth > 0) return;
+        }
+        flush();
+    }
+
+    protected void propertyChanged(T source,
+                                    String propertyName,
+                                    Object newValue) {
+        synchronized (this) {
+            if (batchDepth > 0 || window != null) {
+                pending.computeIfAbsent(source, s -> new LinkedHashMap<>())
+                    .put(propertyName, newValue);
+                if (batchDepth == 0 && scheduledFlush == null) {
+                    scheduledFlush = scheduler.schedule(
+                        () -> flush(true), window.toMillis(), TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+        }
+        deliver(new PropertyChangedEventArgs<>(source, propertyName, newValue));
+    }
+
+    public void flush() {
+        flush(false);
+    }
+
+    // a window that runs out while a batch is open leaves the changes to the batch, so they
+    // still arrive all at once when it closes
+    private void flush(boolean timed) {
+        List<PropertyChangedEventArgs<T>> events = new ArrayList<>();
+        synchronized (this) {
+            if (timed && batchDepth > 0) {
+                scheduledFlush = null;
+                return;
+            }
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+            for (Map.Entry<T, Map<String, Object>> source : pending.entrySet()) {
+                for (Map.Entry<String, Object> change : source.getValue().entrySet()) {
+                    events.add(new PropertyChangedEventArgs<>(
+                        source.getKey(), change.getKey(), change.getValue()));
+                }
+            }
+            pending.clear();
+        }
+        for (PropertyChangedEventArgs<T> event : events) {
+            deliver(event);
+        }
+    }
+
+    private void deliver(PropertyChangedEventArgs<T> event) {
+        for (Observer<T> observer : observers) {
+            observer.handle(event);
+        }
+    }
+}
+
+// the original Observable from ObserverAndObservable, kept for comparison
+
+class EagerPerson extends EagerObservable<EagerPerson> {
+    private int age;
+
+    public int getAge() {
+        return age;
+    }
+
+    public void setAge(int age) {
+        if (age == this.age) return;
+        this.age = age;
+        super.propertyChanged(this, "age", age);
+    }
+}
+
+class EagerObservable<T> {
+
+    private List<Observer<T>> observers = new ArrayList<>();
+
+    public void subscribe(Observer<T> observer) {
+        observers.add(observer);
+    }
+
+    protected void propertyChanged(T source,
+                                    String propertyName,
+                                    Object newValue) {
+        for (Observer<T> observer : observers) {
+            observer.handle(new PropertyChangedEventArgs<T>(
+                source, propertyName, newValue));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+// needs ObservablePropertyProcessor to generate Person, see that file for how to compile it
+public class GeneratedObserver {
+    public static void main(String[] args) {
+        Person person = new Person();
+        person.subscribeAge((source, oldValue, newValue) ->
+            System.out.println("Person's age changed from " + oldValue + " to " + newValue));
+        person.subscribe(e ->
+            System.out.println("Person's " + e.getPropertyName() + " changed to " + e.getNewValue()));
+
+        for (int i = 1; i < 3; i++) {
+            person.setAge(i);
+        }
+        person.setName("John");
+
+        System.out.println();
+        benchmark();
+    }
+
+    private static final int CHANGES = 10_000_000;
+
+    private static void benchmark() {
+        System.out.printf("%9s %22s %22s %22s%n",
+            "observers", "handwritten (ns, B)", "generated int (ns, B)", "generated any (ns, B)");
+
+        for (int observers : new int[] { 0, 1, 10, 100 }) {
+            HandwrittenPerson handwritten = new HandwrittenPerson();
+            Person primitive = new Person();
+            Person boxed = new Person();
+            long[] sum = new long[1];
+            for (int i = 0; i < observers; i++) {
+                handwritten.subscribe(e -> sum[0] += ((Number) e.getNewValue()).longValue());
+                primitive.subscribeAge((source, oldValue, newValue) -> sum[0] += newValue);
+                boxed.subscribe(e -> sum[0] += ((Number) e.getNewValue()).longValue());
+            }
+
+            double[] a = null, b = null, c = null;
+            for (int round = 0; round < 3; round++) {
+                a = measure(handwritten::setAge, observers);
+                b = measure(primitive::setAge, observers);
+                c = measure(boxed::setAge, observers);
+            }
+
+            System.out.printf("%9d %13.1f %8.1f %13.1f %8.1f %13.1f %8.1f%n",
+                observers, a[0], a[1], b[0], b[1], c[0], c[1]);
+        }
+    }
+
+    // nanoseconds and bytes allocated per setter call
+    private static double[] measure(java.util.function.IntConsumer setter, int observers) {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int changes = observers >= 100 ? CHANGES / 10 : CHANGES;
+
+        long bytes = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 1; i <= changes; i++) {
+            setter.accept(1000 + i);
+        }
+        long elapsed = System.nanoTime() - start;
+        bytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+        return new double[] { (double) elapsed / changes, (double) bytes / changes };
+    }
+}
+
+// Person, with its setters and subscribe methods, is generated from this class
+abstract class PersonBase {
+    @ObservableProperty int age;
+    @ObservableProperty String name;
+}
+
+// the hand-written setter from ObserverAndObservable, kept for comparison
+
+class HandwrittenPerson extends HandwrittenObservable<HandwrittenPerson> {
+    private int age;
+
+    public int getAge() {
+        return age;
+    }
+
+    public void setAge(int age) {
+        if (age == this.age) return;
+        this.age = age;
+        super.propertyChanged(this, "age", age);
+    }
+}
+
+class HandwrittenObservable<T> {
+
+    private List<Observer<T>> observers = new ArrayList<>();
+
+    public void subscribe(Observer<T> observer) {
+        observers.add(observer);
+    }
+
+    protected void propertyChanged(T source,
+                                    String propertyName,
+                                    Object newValue) {
+        for (Observer<T> observer : observers) {
+            observer.handle(new PropertyChangedEventArgs<T>(
+                source, propertyName, newValue));
+        }
+    }
+}
@@ -0,0 +1,323 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.tools.Diagnostic;
+
+// Generates a subclass with change notification for every class named `XxxBase`
+// that has fields annotated with @ObservableProperty, e.g. PersonBase -> Person.
+//
+//   javac -d out ObservablePropertyProcessor.java
+//   javac -cp out -processorpath out -processor ObservablePropertyProcessor -d out GeneratedObserver.java
+//   java -cp out GeneratedObserver
+@SupportedAnnotationTypes("ObservableProperty")
+public class ObservablePropertyProcessor extends AbstractProcessor {
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        Map<TypeElement, List<VariableElement>> fieldsByClass = new LinkedHashMap<>();
+        for (Element element : round.getElementsAnnotatedWith(ObservableProperty.class)) {
+            VariableElement field = (VariableElement) element;
+            if (field.getModifiers().contains(Modifier.PRIVATE)
+                || field.getModifiers().contains(Modifier.FINAL)) {
+                error(field, "@ObservableProperty fields can be neither private nor final");
+                continue;
+            }
+            if (field.getSimpleName().toString().startsWith("$")) {
+                error(field, "@ObservableProperty field names can't start with $, those are kept for generated code");
+                continue;
+            }
+            fieldsByClass.computeIfAbsent((TypeElement) field.getEnclosingElement(),
+                c -> new ArrayList<>()).add(field);
+        }
+
+        for (Map.Entry<TypeElement, List<VariableElement>> entry : fieldsByClass.entrySet()) {
+            TypeElement base = entry.getKey();
+            String baseName = base.getSimpleName().toString();
+            if (!baseName.endsWith("Base") || baseName.length() == 4) {
+                error(base, "classes with @ObservableProperty fields must be named XxxBase");
+                continue;
+            }
+            try {
+                generate(base, baseName.substring(0, baseName.length() - 4), entry.getValue());
+            } catch (IOException e) {
+                error(base, "could not generate source: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    private void generate(TypeElement base, String name, List<VariableElement> fields)
+        throws IOException {
+        try (PrintWriter out = new PrintWriter(
+            processingEnv.getFiler().createSourceFile(name, base).openWriter())) {
+
+            out.println("// generated by ObservablePropertyProcessor from " + base.getSimpleName() + ", do not edit");
+            out.println("class " + name + " extends " + base.getSimpleName() + " {");
+            out.println();
+            // the generated names start with $ so that no annotated field can shadow them
+            out.println("    private final ChangeSupport<" + name + "> $changes = new ChangeSupport<>();");
+
+            for (VariableElement field : fields) {
+                String property = field.getSimpleName().toString();
+                out.println("    private final " + holderType(field, name) + " "
+                    + property + "Property = new " + holder(field) + "<>();");
+            }
+
+            out.println();
+            out.println("    // receives changes of every property, boxed into a PropertyChangedEventArgs");
+            out.println("    public void subscribe(Observer<" + name + "> observer) {");
+            out.println("        $changes.subscribe(observer);");
+            out.println("    }");
+
+            for (VariableElement field : fields) {
+                String property = field.getSimpleName().toString();
+                String capitalized = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+                String type = field.asType().toString();
+
+                out.println();
+                out.println("    public " + type + " get" + capitalized + "() {");
+                out.println("        return " + property + ";");
+                out.println("    }");
+                out.println();
+                out.println("    public void set" + capitalized + "(" + type + " " + property + ") {");
+                out.println("        " + type + " $old = this." + property + ";");
+                out.println("        if (" + equality(field, "$old", property) + ") return;");
+                out.println("        this." + property + " = " + property + ";");
+                out.println("        " + property + "Property.fire(this, $old, " + property + ");");
+                out.println("        if ($changes.isObserved()) {");
+                out.println("            $changes.fire(new PropertyChangedEventArgs<>(this, \""
+                    + property + "\", " + property + "));");
+                out.println("        }");
+                out.println("    }");
+                out.println();
+                out.println("    public void subscribe" + capitalized + "("
+                    + observerType(field, name) + " observer) {");
+                out.println("        " + property + "Property.subscribe(observer);");
+                out.println("    }");
+            }
+            out.println("}");
+        }
+    }
+
+    private static String holder(VariableElement field) {
+        return switch (field.asType().getKind()) {
+            case INT -> "IntProperty";
+            case LONG -> "LongProperty";
+            case DOUBLE -> "DoubleProperty";
+            default -> "ObjectProperty";
+        };
+    }
+
+    private static String holderType(VariableElement field, String name) {
+        return switch (field.asType().getKind()) {
+            case INT, LONG, DOUBLE -> holder(field) + "<" + name + ">";
+            default -> "ObjectProperty<" + name + ", " + boxed(field) + ">";
+        };
+    }
+
+    private static String observerType(VariableElement field, String name) {
+        return switch (field.asType().getKind()) {
+            case INT -> "IntObserver<" + name + ">";
+            case LONG -> "LongObserver<" + name + ">";
+            case DOUBLE -> "DoubleObserver<" + name + ">";
+            default -> "ObjectObserver<" + name + ", " + boxed(field) + ">";
+        };
+    }
+
+    private static String boxed(VariableElement field) {
+        TypeKind kind = field.asType().getKind();
+        return switch (kind) {
+            case BOOLEAN -> "Boolean";
+            case BYTE -> "Byte";
+            case SHORT -> "Short";
+            case CHAR -> "Character";
+            case FLOAT -> "Float";
+            case INT -> "Integer";
+            case LONG -> "Long";
+            case DOUBLE -> "Double";
+            default -> field.asType().toString();
+        };
+    }
+
+    private static String equality(VariableElement field, String a, String b) {
+        TypeKind kind = field.asType().getKind();
+        if (kind == TypeKind.DOUBLE)
+            return "Double.doubleToLongBits(" + a + ") == Double.doubleToLongBits(" + b + ")";
+        if (kind == TypeKind.FLOAT)
+            return "Float.floatToIntBits(" + a + ") == Float.floatToIntBits(" + b + ")";
+        if (kind.isPrimitive())
+            return a + " == " + b;
+        return "java.util.Objects.equals(" + a + ", " + b + ")";
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
+
+// marks a field of an XxxBase class for which the generated Xxx gets a notifying setter
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+@interface ObservableProperty {
+}
+
+// runtime support used by the generated classes
+
+class PropertyChangedEventArgs<T> {
+    private T source;
+    private String propertyName;
+    private Object newValue;
+
+    public PropertyChangedEventArgs(T source,
+                                    String propertyName,
+                                    Object newValue) {
+        this.source = source;
+        this.propertyName = propertyName;
+        this.newValue = newValue;
+    }
+
+    public T getSource() {
+        return source;
+    }
+
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    public Object getNewValue() {
+        return newValue;
+    }
+}
+
+interface Observer<T> {
+    void handle(PropertyChangedEventArgs<T> args);
+}
+
+interface IntObserver<T> {
+    void changed(T source, int oldValue, int newValue);
+}
+
+interface LongObserver<T> {
+    void changed(T source, long oldValue, long newValue);
+}
+
+interface DoubleObserver<T> {
+    void changed(T source, double oldValue, double newValue);
+}
+
+interface ObjectObserver<T, V> {
+    void changed(T source, V oldValue, V newValue);
+}
+
+// observers live in an array which is replaced on subscribe, so firing never allocates
+
+class ChangeSupport<T> {
+    private volatile Object[] observers = new Object[0];
+
+    public synchronized void subscribe(Observer<T> observer) {
+        observers = IntProperty.append(observers, Objects.requireNonNull(observer));
+    }
+
+    // lets the setter skip creating the event when nobody listens
+    public boolean isObserved() {
+        return observers.length > 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void fire(PropertyChangedEventArgs<T> args) {
+        for (Object observer : observers) {
+            ((Observer<T>) observer).handle(args);
+        }
+    }
+}
+
+class IntProperty<T> {
+    private volatile Object[] observers = new Object[0];
+
+    public synchronized void subscribe(IntObserver<T> observer) {
+        observers = append(observers, Objects.requireNonNull(observer));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void fire(T source, int oldValue, int newValue) {
+        for (Object observer : observers) {
+            ((IntObserver<T>) observer).changed(source, oldValue, newValue);
+        }
+    }
+
+    static Object[] append(Object[] observers, Object observer) {
+        Object[] result = Arrays.copyOf(observers, observers.length + 1);
+        result[observers.length] = observer;
+        return result;
+    }
+}
+
+class LongProperty<T> {
+    private volatile Object[] observers = new Object[0];
+
+    public synchronized void subscribe(LongObserver<T> observer) {
+        observers = IntProperty.append(observers, Objects.requireNonNull(observer));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void fire(T source, long oldValue, long newValue) {
+        for (Object observer : observers) {
+            ((LongObserver<T>) observer).changed(source, oldValue, newValue);
+        }
+    }
+}
+
+class DoubleProperty<T> {
+    private volatile Object[] observers = new Object[0];
+
+    public synchronized void subscribe(DoubleObserver<T> observer) {
+        observers = IntProperty.append(observers, Objects.requireNonNull(observer));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void fire(T source, double oldValue, double newValue) {
+        for (Object observer : observers) {
+            ((DoubleObserver<T>) observer).changed(source, oldValue, newValue);
+        }
+    }
+}
+
+class ObjectProperty<T, V> {
+    private volatile Object[] observers = new Object[0];
+
+    public synchronized void subscribe(ObjectObserver<T, V> observer) {
+        observers = IntProperty.append(observers, Objects.requireNonNull(observer));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void fire(T source, V oldValue, V newValue) {
+        for (Object observer : observers) {
+            ((ObjectObserver<T, V>) observer).changed(source, oldValue, newValue);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PropertyIndexedObserver {
+    public static void main(String[] args) {
+        Person person = new Person();
+        person.subscribe("age", e -> System.out.println(
+            "Age observer: age changed to " + e.getNewValue()));
+        person.subscribe("name", e -> System.out.println(
+            "Name observer: name changed to " + e.getNewValue()));
+        person.subscribe(e -> System.out.println(
+            "Broadcast observer: " + e.getPropertyName() + " changed to " + e.getNewValue()));
+
+        person.setAge(42);
+        person.setName("John");
+
+        System.out.println();
+        benchmark();
+    }
+
+    private static final int PROPERTIES = 50;
+    private static final int OBSERVERS = 10_000;
+    private static final int CHANGES = 100_000;
+
+    // every observer cares about a single property out of fifty
+    private static void benchmark() {
+        Gadget indexed = new Gadget();
+        BroadcastGadget broadcast = new BroadcastGadget();
+        long[] hits = new long[1];
+
+        for (int i = 0; i < OBSERVERS; i++) {
+            String property = Gadget.NAMES[i % PROPERTIES];
+            indexed.subscribe(property, e -> hits[0]++);
+            broadcast.subscribe(e -> {
+                if (property.equals(e.getPropertyName())) hits[0]++;
+            });
+        }
+
+        System.out.printf("%d properties, %,d observers%n", PROPERTIES, OBSERVERS);
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < CHANGES / 100; i++)
+                broadcast.setValue(i % PROPERTIES, round * CHANGES + i + 1);
+            double broadcastRate = CHANGES / 100 / ((System.nanoTime() - start) / 1e9);
+
+            start = System.nanoTime();
+            for (int i = 0; i < CHANGES; i++)
+                indexed.setValue(i % PROPERTIES, round * CHANGES + i + 1);
+            double indexedRate = CHANGES / ((System.nanoTime() - start) / 1e9);
+
+            System.out.printf("  broadcast %,12.0f changes/s   indexed %,12.0f changes/s   (%d hits)%n",
+                broadcastRate, indexedRate, hits[0]);
+        }
+    }
+}
+
+class Person extends Observable<Person> {
+    static final PropertyIndex PROPERTIES = new PropertyIndex();
+    static final int AGE = PROPERTIES.intern("age");
+    static final int NAME = PROPERTIES.intern("name");
+
+    private int age;
+    private String name;
+
+    public Person() {
+        super(PROPERTIES);
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public void setAge(int age) {
+        if (age == this.age) return;
+        this.age = age;
+        super.propertyChanged(this, AGE, age);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        if (name.equals(this.name)) return;
+        this.name = name;
+        super.propertyChanged(this, NAME, name);
+    }
+}
+
+// something with lots of properties, like a dashboard widget
+class Gadget extends Observable<Gadget> {
+    static final PropertyIndex PROPERTIES = new PropertyIndex();
+    static final String[] NAMES = new String[50];
+    static final int[] IDS = new int[NAMES.length];
+
+    static {
+        for (int i = 0; i < NAMES.length; i++) {
+            NAMES[i] = "property" + i;
+            IDS[i] = PROPERTIES.intern(NAMES[i]);
+        }
+    }
+
+    private final int[] values = new int[NAMES.length];
+
+    public Gadget() {
+        super(PROPERTIES);
+    }
+
+    public void setValue(int property, int value) {
+        if (values[property] == value) return;
+        values[property] = value;
+        super.propertyChanged(this, IDS[property], value);
+    }
+}
+
+class PropertyChangedEventArgs<T> {
+    private T source;
+    private String propertyName;
+    private Object newValue;
+
+    public PropertyChangedEventArgs(T source,
+                                    String propertyName,
+                                    Object newValue) {
+        this.source = source;
+        this.propertyName = propertyName;
+        this.newValue = newValue;
+    }
+
+    public T getSource() {
+        return source;
+    }
+
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    public Object getNewValue() {
+        return newValue;
+    }
+}
+
+interface Observer<T> {
+    void handle(PropertyChangedEventArgs<T> args);
+}
+
+// hands out small consecutive ids for property names, one index per observable class
+class PropertyIndex {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private volatile String[] names = new String[0];
+
+    public synchronized int intern(String name) {
+        return ids.computeIfAbsent(name, n -> {
+            String[] grown = Arrays.copyOf(names, names.length + 1);
+            grown[names.length] = n;
+            names = grown;
+            return grown.length - 1;
+        });
+    }
+
+    // the id of a property that has already been interned, a typo in a name would
+    // otherwise quietly subscribe to a property that never changes
+    public int id(String name) {
+        Integer id;
+        synchronized (this) {
+            id = ids.get(name);
+        }
+        if (id == null) throw new IllegalArgumentException("Unknown property: " + name);
+        return id;
+    }
+
+    public String name(int id) {
+        return names[id];
+    }
+}
+
+class Observable<T> {
+
+    @SuppressWarnings("unchecked")
+    private static <T> Observer<T>[] none() {
+        return (Observer<T>[]) new Observer<?>[0];
+    }
+
+    private final PropertyIndex properties;
+    private volatile Observer<T>[] everything = none();
+    // subscribers per property id, arrays are replaced rather than modified
+    private volatile Observer<T>[][] byProperty;
+
+    @SuppressWarnings("unchecked")
+    protected Observable(PropertyIndex properties) {
+        this.properties = properties;
+        this.byProperty = (Observer<T>[][]) new Observer<?>[0][];
+    }
+
+    // receives changes of every property
+    public synchronized void subscribe(Observer<T> observer) {
+        everything = append(everything, observer);
+    }
+
+    // receives changes of this property only, which has to be one the class declares
+    public synchronized void subscribe(String propertyName, Observer<T> observer) {
+        int id = properties.id(propertyName);
+        Observer<T>[][] table = byProperty;
+        if (id >= table.length) {
+            table = Arrays.copyOf(table, id + 1);
+        } else {
+            table = table.clone();
+        }
+        table[id] = append(table[id] == null ? none() : table[id], observer);
+        byProperty = table;
+    }
+
+    private static <T> Observer<T>[] append(Observer<T>[] observers, Observer<T> observer) {
+        Observer<T>[] result = Arrays.copyOf(observers, observers.length + 1);
+        result[observers.length] = observer;
+        return result;
+    }
+
+    protected void propertyChanged(T source,
+                                    int propertyId,
+                                    Object newValue) {
+        Observer<T>[][] table = byProperty;
+        Observer<T>[] interested = propertyId < table.length ? table[propertyId] : null;
+        Observer<T>[] all = everything;
+        if ((interested == null || interested.length == 0) && all.length == 0) return;
+
+        PropertyChangedEventArgs<T> args = new PropertyChangedEventArgs<>(
+            source, properties.name(propertyId), newValue);
+        if (interested != null) {
+            for (Observer<T> observer : interested) {
+                observer.handle(args);
+            }
+        }
+        for (Observer<T> observer : all) {
+            observer.handle(args);
+        }
+    }
+}
+
+// the original broadcasting Observable, kept for comparison
+
+class BroadcastGadget extends BroadcastObservable<BroadcastGadget> {
+    private final int[] values = new int[Gadget.NAMES.length];
+
+    public void setValue(int property, int value) {
+        if (values[property] == value) return;
+        values[property] = value;
+        super.propertyChanged(this, Gadget.NAMES[property], value);
+    }
+}
+
+class BroadcastObservable<T> {
+
+    private List<Observer<T>> observers = new ArrayList<>();
+
+    public void subscribe(Observer<T> observer) {
+        observers.add(observer);
+    }
+
+    protected void propertyChanged(T source,
+                                    String propertyName,
+                                    Object newValue) {
+        for (Observer<T> observer : observers) {
+            observer.handle(new PropertyChangedEventArgs<T>(
+                source, propertyName, newValue));
+        }
+    }
+}
@@ -0,0 +1,198 @@
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+public class WeakEvents {
+    public static void main(String[] args) throws Exception {
+        Person person = new Person();
+        Display display = new Display("Display");
+        person.propertyChanged.addWeakHandler(display, Display::show);
+
+        person.setAge(1);
+
+        display = null;
+        System.gc();
+        Thread.sleep(100);
+
+        // nobody closed the subscription, but the display is gone
+        person.setAge(2);
+        System.out.println("Handlers left: " + person.propertyChanged.size());
+
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        System.out.println();
+        soak("strong", seconds, false);
+        soak("weak", seconds, true);
+    }
+
+    // subscribers that never close their subscription keep coming in while the event keeps firing
+    private static void soak(String mode, int seconds, boolean weak) throws Exception {
+        System.out.printf("%s handlers, %d seconds%n", mode, seconds);
+        System.out.printf("%8s %12s %14s %16s%n", "second", "handlers", "heap (MB)", "fire (us)");
+
+        Runtime runtime = Runtime.getRuntime();
+        Person person = new Person();
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        long nextReport = System.nanoTime() + 1_000_000_000L;
+        int second = 0, age = 0;
+        long fires = 0, fireNanos = 0;
+
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < 100; i++) {
+                Display display = new Display("Display #" + i);
+                if (weak) person.propertyChanged.addWeakHandler(display, Display::count);
+                else person.propertyChanged.addHandler(display::count);
+            }
+
+            long start = System.nanoTime();
+            person.setAge(++age);
+            fireNanos += System.nanoTime() - start;
+            fires++;
+
+            if (System.nanoTime() >= nextReport) {
+                System.gc();
+                long heap = runtime.totalMemory() - runtime.freeMemory();
+                System.out.printf("%8d %,12d %,14.1f %,16.1f%n", ++second,
+                    person.propertyChanged.size(), heap / 1e6, fireNanos / 1e3 / fires);
+                fires = fireNanos = 0;
+                nextReport += 1_000_000_000L;
+            }
+        }
+        System.out.println();
+    }
+}
+
+class Display {
+    private final String name;
+    private final byte[] buffer = new byte[1024];
+
+    public Display(String name) {
+        this.name = name;
+    }
+
+    public void show(PropertyChangedEventArgs args) {
+        System.out.println(name + ": person's " + args.propertyName + " changed to " + args.source);
+    }
+
+    public void count(PropertyChangedEventArgs args) {
+        buffer[0]++;
+    }
+}
+
+class Event<TArgs>
+{
+    private int count = 0;
+    // linked, so that firing costs the live handlers and not the table's high-water mark
+    private Map<Integer, Consumer<TArgs>>
+        handlers = new LinkedHashMap<>();
+    private ReferenceQueue<Object> collected = new ReferenceQueue<>();
+
+    public Subscription addHandler(Consumer<TArgs> handler) {
+        expungeCollected();
+        int id = count++;
+        handlers.put(id, handler);
+        return new Subscription(this, id);
+    }
+
+    // the event only keeps a weak reference to the owner, so the handler
+    // gets the owner as an argument instead of capturing it
+    public <O> Subscription addWeakHandler(O owner, BiConsumer<O, TArgs> handler) {
+        expungeCollected();
+        int id = count++;
+        handlers.put(id, new WeakHandler<>(owner, handler, id, collected));
+        return new Subscription(this, id);
+    }
+
+    public void fire(TArgs args)
+    {
+        expungeCollected();
+        for (Consumer<TArgs> handler : handlers.values()) {
+            handler.accept(args);
+        }
+    }
+
+    public int size() {
+        expungeCollected();
+        return handlers.size();
+    }
+
+    // only the handlers whose owner has been collected, no scan of the whole map
+    private void expungeCollected() {
+        Object reference;
+        while ((reference = collected.poll()) != null) {
+            handlers.remove(((WeakHandler<?, ?>) reference).id);
+        }
+    }
+
+    private static class WeakHandler<O, TArgs>
+        extends WeakReference<O>
+        implements Consumer<TArgs>
+    {
+        private final BiConsumer<O, TArgs> handler;
+        private final int id;
+
+        public WeakHandler(O owner, BiConsumer<O, TArgs> handler,
+                           int id, ReferenceQueue<Object> queue) {
+            super(owner, queue);
+            this.handler = handler;
+            this.id = id;
+        }
+
+        @Override
+        public void accept(TArgs args) {
+            O owner = get();
+            if (owner != null) handler.accept(owner, args);
+        }
+    }
+
+    public class Subscription implements AutoCloseable
+    {
+        private Event<TArgs> event;
+        private int id;
+
+        public Subscription(Event<TArgs> event, int id)
+        {
+            this.event = event;
+            this.id = id;
+        }
+
+        @Override
+        public void close() {
+            event.handlers.remove(id);
+         }
+    }
+}
+
+class PropertyChangedEventArgs {
+    public Object source;
+    public String propertyName;
+
+    public PropertyChangedEventArgs(Object source, String propertyName) {
+        this.source = source;
+        this.propertyName = propertyName;
+    }
+}
+
+class Person
+{
+    public Event<PropertyChangedEventArgs> propertyChanged;
+
+    public Person() {
+        propertyChanged = new Event<>();
+    }
+
+    private int age;
+
+    public int getAge() {
+        return age;
+    }
+
+    public void setAge(int age) {
+        if (age == this.age) return;
+        this.age = age;
+
+        propertyChanged.fire(new PropertyChangedEventArgs(age, "age"));
+    }
+}
@@ -0,0 +1,132 @@
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+public class WeakObservable implements Observer<Person> {
+    public static void main(String[] args) throws Exception {
+        Person person = new Person();
+        new WeakObservable(person);
+
+        // the observer above is unreachable now, it never unsubscribed
+        System.gc();
+        Thread.sleep(100);
+
+        person.setAge(10);
+        System.out.println("Observers left: " + person.observerCount());
+    }
+
+    public WeakObservable(Person person) {
+        person.subscribeWeakly(this);
+
+        for (int i = 1; i < 5; i++) {
+            person.setAge(i);
+        }
+    }
+
+    @Override
+    public void handle(PropertyChangedEventArgs<Person> args) {
+        System.out.println("Person's " + args.getPropertyName()
+        + " changed to " + args.getNewValue());
+    }
+}
+
+class Person extends Observable<Person> {
+    private int age;
+
+    public int getAge() {
+        return age;
+    }
+
+    public void setAge(int age) {
+        if (age == this.age) return;
+        this.age = age;
+        super.propertyChanged(this, "age", age);
+    }
+}
+
+class PropertyChangedEventArgs<T> {
+    private T source;
+    private String propertyName;
+    private Object newValue;
+
+    public PropertyChangedEventArgs(T source,
+                                    String propertyName,
+                                    Object newValue) {
+        this.source = source;
+        this.propertyName = propertyName;
+        this.newValue = newValue;
+    }
+
+    public T getSource() {
+        return source;
+    }
+
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    public Object getNewValue() {
+        return newValue;
+    }
+}
+
+interface Observer<T> {
+    void handle(PropertyChangedEventArgs<T> args);
+}
+
+class Observable<T> {
+
+    private List<Observer<T>> observers = new ArrayList<>();
+    private Set<WeakObserver<T>> weakObservers = new LinkedHashSet<>();
+    private ReferenceQueue<Observer<T>> collected = new ReferenceQueue<>();
+
+    public void subscribe(Observer<T> observer) {
+        observers.add(observer);
+    }
+
+    // the observable won't keep the observer alive, it's dropped once collected
+    public void subscribeWeakly(Observer<T> observer) {
+        expungeCollected();
+        weakObservers.add(new WeakObserver<>(observer, collected));
+    }
+
+    public int observerCount() {
+        expungeCollected();
+        return observers.size() + weakObservers.size();
+    }
+
+    protected void propertyChanged(T source,
+                                    String propertyName,
+                                    Object newValue) {
+        expungeCollected();
+        for (Observer<T> observer : observers) {
+            observer.handle(new PropertyChangedEventArgs<T>(
+                source, propertyName, newValue));
+        }
+        for (WeakObserver<T> reference : weakObservers) {
+            Observer<T> observer = reference.get();
+            if (observer != null) {
+                observer.handle(new PropertyChangedEventArgs<T>(
+                    source, propertyName, newValue));
+            }
+        }
+    }
+
+    // only the observers that have been collected, no scan of the whole set
+    @SuppressWarnings("unchecked")
+    private void expungeCollected() {
+        Object reference;
+        while ((reference = collected.poll()) != null) {
+            weakObservers.remove((WeakObserver<T>) reference);
+        }
+    }
+
+    private static class WeakObserver<T> extends WeakReference<Observer<T>> {
+        public WeakObserver(Observer<T> observer, ReferenceQueue<Observer<T>> queue) {
+            super(observer, queue);
+        }
+    }
+}
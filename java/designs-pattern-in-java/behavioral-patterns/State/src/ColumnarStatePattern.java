@@ -0,0 +1,230 @@
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.statemachine.StateMachine;
+
+import reactor.core.publisher.Mono;
+
+public class ColumnarStatePattern {
+
+    public static void main(String[] args) throws Exception
+    {
+        TransitionTable<PhoneState, PhoneTrigger> phone =
+            TransitionTable.builder(PhoneState.class, PhoneTrigger.class)
+                .rules(HandmadeStatePattern.machineRules)
+                .build();
+
+        // one machine per call, all of them following the same rules
+        StateMachinePool<PhoneState, PhoneTrigger> calls = new StateMachinePool<>(phone, 16);
+        for (int i = 0; i < 4; i++)
+            calls.add(PhoneState.OFF_HOOK);
+        calls.fire(0, PhoneTrigger.DIAL);
+        calls.fire(0, PhoneTrigger.ANSWER);
+        calls.fire(1, PhoneTrigger.FINISH);
+        System.out.println("Call 2 can answer: " + calls.fire(2, PhoneTrigger.ANSWER));
+        print(calls);
+
+        // every call that can dial does, the others ignore the trigger
+        calls.fireAll(PhoneTrigger.DIAL);
+        print(calls);
+
+        calls.fire(new int[] { 0, 2 }, PhoneTrigger.HANG_UP);
+        print(calls);
+
+        System.out.println();
+        benchmark(phone);
+    }
+
+    private static void print(StateMachinePool<PhoneState, PhoneTrigger> calls)
+    {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < calls.size(); i++)
+            line.append(i).append(": ").append(calls.state(i)).append("  ");
+        System.out.println(line.toString().trim());
+    }
+
+    private static final int MACHINES = 10_000_000, SPRING_MACHINES = 10_000;
+    private static final int EVENTS = 10_000_000, SPRING_EVENTS = 100_000, BULK_ROUNDS = 20;
+
+    static volatile long sink;
+
+    private static void benchmark(TransitionTable<PhoneState, PhoneTrigger> phone) throws Exception
+    {
+        // random events for random calls, leaving out FINISH so the calls keep going
+        SplittableRandom random = new SplittableRandom(42);
+        PhoneTrigger[] triggers = PhoneTrigger.values();
+        int[] targets = new int[EVENTS];
+        PhoneTrigger[] events = new PhoneTrigger[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            targets[i] = random.nextInt(MACHINES);
+            events[i] = triggers[random.nextInt(PhoneTrigger.FINISH.ordinal())];
+        }
+
+        System.out.printf("%,d machines, %,d Spring machines%n", MACHINES, SPRING_MACHINES);
+        System.out.printf("%-24s %16s %18s %18s%n", "machines", "bytes/machine",
+            "random (events/s)", "bulk (events/s)");
+
+        long before = usedHeap();
+        List<StateMachine<States, Events>> spring = new ArrayList<>();
+        for (int i = 0; i < SPRING_MACHINES; i++) {
+            StateMachine<States, Events> machine = SpringStatePattern.buildMachine();
+            machine.startReactively().block();
+            spring.add(machine);
+        }
+        double springBytes = (double) (usedHeap() - before) / SPRING_MACHINES;
+        double springRate = 0;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < SPRING_EVENTS; i++) {
+                Events event = Events.valueOf(events[i].name());
+                spring.get(targets[i] % SPRING_MACHINES)
+                    .sendEvent(Mono.just(MessageBuilder.withPayload(event).build()))
+                    .blockLast();
+            }
+            springRate = SPRING_EVENTS / ((System.nanoTime() - start) / 1e9);
+        }
+        System.out.printf("%-24s %,16.1f %,18.0f %18s%n", "Spring StateMachine", springBytes, springRate, "-");
+        spring = null;
+
+        before = usedHeap();
+        CompiledStateMachine<PhoneState, PhoneTrigger>[] objects = newArray(MACHINES);
+        for (int i = 0; i < MACHINES; i++)
+            objects[i] = phone.start(PhoneState.OFF_HOOK);
+        double objectBytes = (double) (usedHeap() - before) / MACHINES;
+        double objectRate = 0;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < EVENTS; i++) {
+                CompiledStateMachine<PhoneState, PhoneTrigger> machine = objects[targets[i]];
+                if (machine.canFire(events[i])) machine.fire(events[i]);
+            }
+            objectRate = EVENTS / ((System.nanoTime() - start) / 1e9);
+        }
+        Reference.reachabilityFence(objects);
+        System.out.printf("%-24s %,16.1f %,18.0f %18s%n", "CompiledStateMachine", objectBytes, objectRate, "-");
+        objects = null;
+
+        before = usedHeap();
+        StateMachinePool<PhoneState, PhoneTrigger> pool = new StateMachinePool<>(phone, MACHINES);
+        for (int i = 0; i < MACHINES; i++)
+            pool.add(PhoneState.OFF_HOOK);
+        double poolBytes = (double) (usedHeap() - before) / MACHINES;
+        double poolRate = 0, bulkRate = 0;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < EVENTS; i++)
+                pool.fire(targets[i], events[i]);
+            poolRate = EVENTS / ((System.nanoTime() - start) / 1e9);
+
+            start = System.nanoTime();
+            for (int i = 0; i < BULK_ROUNDS; i++)
+                pool.fireAll(events[i]);
+            bulkRate = (double) MACHINES * BULK_ROUNDS / ((System.nanoTime() - start) / 1e9);
+        }
+        sink += pool.count(PhoneState.CONNECTED);
+        System.out.printf("%-24s %,16.1f %,18.0f %,18.0f%n", "StateMachinePool", poolBytes, poolRate, bulkRate);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CompiledStateMachine<PhoneState, PhoneTrigger>[] newArray(int size)
+    {
+        return (CompiledStateMachine<PhoneState, PhoneTrigger>[]) new CompiledStateMachine<?, ?>[size];
+    }
+
+    private static long usedHeap()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
+
+// any number of machines sharing one immutable TransitionTable, where a machine is nothing
+// but the byte holding its current state in a single array; machines are identified by their
+// index, and triggers can be fired at one machine, a group of them or all of them at once
+class StateMachinePool<S extends Enum<S>, T extends Enum<T>>
+{
+    private final TransitionTable<S, T> table;
+    // for every trigger, the state each state moves to, which is the same state where the
+    // trigger isn't permitted, so applying a trigger in bulk needs no branches
+    private final byte[][] next;
+    private byte[] states;
+    private int size = 0;
+
+    public StateMachinePool(TransitionTable<S, T> table, int capacity)
+    {
+        if (table.stateCount() > Byte.MAX_VALUE)
+            throw new IllegalArgumentException("A pool holds machines with up to 127 states");
+        this.table = table;
+        next = new byte[table.triggerCount()][table.stateCount()];
+        for (int trigger = 0; trigger < table.triggerCount(); trigger++)
+            for (int state = 0; state < table.stateCount(); state++) {
+                int target = table.target(state, trigger);
+                next[trigger][state] = (byte) (target == TransitionTable.NONE ? state : target);
+            }
+        states = new byte[Math.max(capacity, 16)];
+    }
+
+    // returns the new machine's index
+    public int add(S initial)
+    {
+        if (size == states.length)
+            states = Arrays.copyOf(states, size * 2);
+        states[size] = (byte) initial.ordinal();
+        return size++;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public S state(int machine)
+    {
+        return table.state(states[checked(machine)]);
+    }
+
+    // false if the machine's current state doesn't permit the trigger
+    public boolean fire(int machine, T trigger)
+    {
+        int target = table.target(states[checked(machine)], trigger.ordinal());
+        if (target == TransitionTable.NONE) return false;
+        states[machine] = (byte) target;
+        return true;
+    }
+
+    public void fire(int[] machines, T trigger)
+    {
+        byte[] moves = next[trigger.ordinal()];
+        for (int machine : machines)
+            states[checked(machine)] = moves[states[machine]];
+    }
+
+    // machines whose state doesn't permit the trigger stay where they are
+    public void fireAll(T trigger)
+    {
+        byte[] moves = next[trigger.ordinal()];
+        byte[] states = this.states;
+        for (int i = 0; i < size; i++)
+            states[i] = moves[states[i]];
+    }
+
+    public int count(S state)
+    {
+        int count = 0;
+        for (int i = 0; i < size; i++)
+            if (states[i] == state.ordinal()) count++;
+        return count;
+    }
+
+    private int checked(int machine)
+    {
+        if (machine < 0 || machine >= size)
+            throw new IndexOutOfBoundsException(machine);
+        return machine;
+    }
+}
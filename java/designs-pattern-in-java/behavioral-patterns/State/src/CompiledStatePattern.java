@@ -0,0 +1,245 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+public class CompiledStatePattern {
+
+    public static void main(String[] args)
+    {
+        TransitionTable<PhoneState, PhoneTrigger> table =
+            TransitionTable.builder(PhoneState.class, PhoneTrigger.class)
+                .rules(HandmadeStatePattern.machineRules)
+                .build();
+
+        CompiledStateMachine<PhoneState, PhoneTrigger> phone = table.start(PhoneState.OFF_HOOK);
+        PhoneTrigger[] call = {
+            PhoneTrigger.DIAL, PhoneTrigger.ANSWER, PhoneTrigger.ON_HOLD,
+            PhoneTrigger.OFF_HOLD, PhoneTrigger.HANG_UP
+        };
+        for (PhoneTrigger trigger : call)
+            System.out.println(trigger + " -> " + phone.fire(trigger));
+
+        System.out.println("Permitted in " + phone.state() + ": " + table.permitted(phone.state()));
+        try {
+            phone.fire(PhoneTrigger.ANSWER);
+        } catch (IllegalStateException e) {
+            System.out.println(e.getMessage());
+        }
+        System.out.println(PhoneTrigger.FINISH + " -> " + phone.fire(PhoneTrigger.FINISH));
+
+        System.out.println();
+        benchmark(table);
+    }
+
+    private static final int TRIGGERS = 1 << 20, ROUNDS = 100;
+
+    static volatile long sink;
+
+    private static void benchmark(TransitionTable<PhoneState, PhoneTrigger> table)
+    {
+        PhoneTrigger[] walk = randomWalk(table);
+        int[] ordinals = new int[walk.length];
+        for (int i = 0; i < walk.length; i++)
+            ordinals[i] = walk[i].ordinal();
+
+        double rules = 0, compiled = 0, byOrdinal = 0;
+        for (int round = 0; round < 3; round++) {
+            PhoneState state = PhoneState.OFF_HOOK;
+            long start = System.nanoTime();
+            for (int r = 0; r < ROUNDS; r++)
+                for (PhoneTrigger trigger : walk)
+                    state = fire(state, trigger);
+            rules = (double) walk.length * ROUNDS / ((System.nanoTime() - start) / 1e9);
+            sink += state.ordinal();
+
+            CompiledStateMachine<PhoneState, PhoneTrigger> machine = table.start(PhoneState.OFF_HOOK);
+            start = System.nanoTime();
+            for (int r = 0; r < ROUNDS; r++)
+                for (PhoneTrigger trigger : walk)
+                    machine.fire(trigger);
+            compiled = (double) walk.length * ROUNDS / ((System.nanoTime() - start) / 1e9);
+            sink += machine.state().ordinal();
+
+            int current = PhoneState.OFF_HOOK.ordinal();
+            start = System.nanoTime();
+            for (int r = 0; r < ROUNDS; r++)
+                for (int trigger : ordinals)
+                    current = table.target(current, trigger);
+            byOrdinal = (double) walk.length * ROUNDS / ((System.nanoTime() - start) / 1e9);
+            sink += current;
+        }
+        System.out.printf("%-30s %,16.0f%n", "map of lists (t/s)", rules);
+        System.out.printf("%-30s %,16.0f%n", "compiled, fire(trigger) (t/s)", compiled);
+        System.out.printf("%-30s %,16.0f%n", "compiled, by ordinal (t/s)", byOrdinal);
+    }
+
+    // what HandmadeStatePattern does for every transition: a hash lookup, then a scan for the trigger
+    private static PhoneState fire(PhoneState state, PhoneTrigger trigger)
+    {
+        for (Map.Entry<PhoneTrigger, PhoneState> rule : HandmadeStatePattern.machineRules.get(state))
+            if (rule.getKey() == trigger) return rule.getValue();
+        throw new IllegalStateException("No transition from " + state + " on " + trigger);
+    }
+
+    // random permitted triggers that keep the call going, ending as soon as the phone is back
+    // at OFF_HOOK after TRIGGERS transitions, so the walk can be repeated
+    private static PhoneTrigger[] randomWalk(TransitionTable<PhoneState, PhoneTrigger> table)
+    {
+        SplittableRandom random = new SplittableRandom(42);
+        List<PhoneTrigger> walk = new ArrayList<>();
+        PhoneState state = PhoneState.OFF_HOOK;
+        while (walk.size() < TRIGGERS || state != PhoneState.OFF_HOOK) {
+            List<PhoneTrigger> permitted = new ArrayList<>(table.permitted(state));
+            permitted.remove(PhoneTrigger.FINISH);
+            PhoneTrigger trigger = permitted.get(random.nextInt(permitted.size()));
+            walk.add(trigger);
+            state = table.target(state, trigger);
+        }
+        return walk.toArray(new PhoneTrigger[0]);
+    }
+}
+
+// the rules of a state machine compiled into a dense table indexed by the ordinals of the
+// current state and the trigger, so a transition is two array loads rather than a hash
+// lookup and a scan; the table never changes once built and can be shared by any number
+// of machines
+final class TransitionTable<S extends Enum<S>, T extends Enum<T>>
+{
+    static final int NONE = -1;
+
+    private final S[] states;
+    private final T[] triggers;
+    // target state ordinal, or NONE when the trigger isn't permitted
+    private final int[][] targets;
+
+    private TransitionTable(S[] states, T[] triggers, int[][] targets)
+    {
+        this.states = states;
+        this.triggers = triggers;
+        this.targets = targets;
+    }
+
+    public static <S extends Enum<S>, T extends Enum<T>> Builder<S, T> builder(
+        Class<S> stateType, Class<T> triggerType)
+    {
+        return new Builder<>(stateType.getEnumConstants(), triggerType.getEnumConstants());
+    }
+
+    public int target(int state, int trigger)
+    {
+        return targets[state][trigger];
+    }
+
+    public S target(S state, T trigger)
+    {
+        int target = targets[state.ordinal()][trigger.ordinal()];
+        return target == NONE ? null : states[target];
+    }
+
+    public S state(int ordinal)
+    {
+        return states[ordinal];
+    }
+
+    public int stateCount()
+    {
+        return states.length;
+    }
+
+    public int triggerCount()
+    {
+        return triggers.length;
+    }
+
+    public List<T> permitted(S state)
+    {
+        List<T> permitted = new ArrayList<>();
+        for (T trigger : triggers)
+            if (targets[state.ordinal()][trigger.ordinal()] != NONE)
+                permitted.add(trigger);
+        return permitted;
+    }
+
+    public CompiledStateMachine<S, T> start(S initial)
+    {
+        return new CompiledStateMachine<>(this, initial.ordinal());
+    }
+
+    public static class Builder<S extends Enum<S>, T extends Enum<T>>
+    {
+        private final S[] states;
+        private final T[] triggers;
+        private final int[][] targets;
+
+        private Builder(S[] states, T[] triggers)
+        {
+            this.states = states;
+            this.triggers = triggers;
+            targets = new int[states.length][triggers.length];
+            for (int[] row : targets)
+                Arrays.fill(row, NONE);
+        }
+
+        public Builder<S, T> permit(S from, T trigger, S to)
+        {
+            int existing = targets[from.ordinal()][trigger.ordinal()];
+            if (existing != NONE && existing != to.ordinal())
+                throw new IllegalArgumentException(from + " already goes to "
+                    + states[existing] + " on " + trigger);
+            targets[from.ordinal()][trigger.ordinal()] = to.ordinal();
+            return this;
+        }
+
+        // takes the rules in the shape HandmadeStatePattern keeps them in
+        public Builder<S, T> rules(Map<S, List<Map.Entry<T, S>>> rules)
+        {
+            rules.forEach((from, transitions) -> {
+                for (Map.Entry<T, S> transition : transitions)
+                    permit(from, transition.getKey(), transition.getValue());
+            });
+            return this;
+        }
+
+        public TransitionTable<S, T> build()
+        {
+            int[][] copy = new int[targets.length][];
+            for (int i = 0; i < targets.length; i++)
+                copy[i] = targets[i].clone();
+            return new TransitionTable<>(states, triggers, copy);
+        }
+    }
+}
+
+// a running machine is nothing but the ordinal of its current state
+class CompiledStateMachine<S extends Enum<S>, T extends Enum<T>>
+{
+    private final TransitionTable<S, T> table;
+    private int state;
+
+    CompiledStateMachine(TransitionTable<S, T> table, int state)
+    {
+        this.table = table;
+        this.state = state;
+    }
+
+    public S state()
+    {
+        return table.state(state);
+    }
+
+    public boolean canFire(T trigger)
+    {
+        return table.target(state, trigger.ordinal()) != TransitionTable.NONE;
+    }
+
+    public S fire(T trigger)
+    {
+        int target = table.target(state, trigger.ordinal());
+        if (target == TransitionTable.NONE)
+            throw new IllegalStateException("No transition from " + table.state(state) + " on " + trigger);
+        state = target;
+        return table.state(target);
+    }
+}
@@ -1,39 +1,119 @@
+import java.lang.management.ManagementFactory;
+
 public class GofStatePattern {
-    public static void main(String[] args) 
+    public static void main(String[] args)
     {
         LightSwitch ls = new LightSwitch();
 
         ls.on();
         ls.off();
         ls.off();
+
+        System.out.println();
+        benchmark();
+    }
+
+    private static final int TOGGLES = 100_000_000;
+
+    // kept in a field so the JIT can't tell the switch never escapes and optimize the
+    // allocations away
+    static LightSwitch light;
+
+    private static void benchmark()
+    {
+        System.out.printf("%,d toggles%n", TOGGLES);
+        System.out.printf("%-24s %18s %18s%n", "states", "ns/transition", "bytes/transition");
+        double[] shared = null, fresh = null;
+        for (int round = 0; round < 3; round++) {
+            shared = toggle(new LightSwitch(LightSwitch.SILENT));
+            fresh = toggle(new LightSwitch(LightSwitch.SILENT, new FreshOffState()));
+        }
+        System.out.printf("%-24s %,18.2f %,18.2f%n", "new state per transition", fresh[0], fresh[1]);
+        System.out.printf("%-24s %,18.2f %,18.2f%n", "shared states", shared[0], shared[1]);
+    }
+
+    // nanoseconds and bytes allocated per transition
+    private static double[] toggle(LightSwitch ls)
+    {
+        light = ls;
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+        long allocated = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < TOGGLES; i += 2) {
+            light.on();
+            light.off();
+        }
+        long time = System.nanoTime() - start;
+        allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+        return new double[] { (double) time / TOGGLES, (double) allocated / TOGGLES };
     }
 }
 
-class State 
+// states keep nothing of their own, so a single instance of each can be shared by every
+// light switch; whatever should happen when the light changes goes into the entry and
+// exit hooks, which the switch calls around every transition
+class State
 {
     void on(LightSwitch ls)
     {
-        System.out.println("Light is already on");
+        ls.report("Light is already on");
     }
 
     void off(LightSwitch ls)
     {
-        System.out.println("Light is already off");
+        ls.report("Light is already off");
+    }
+
+    void enter(LightSwitch ls)
+    {
+    }
+
+    void exit(LightSwitch ls)
+    {
     }
 }
 
 class LightSwitch
 {
+    interface Output
+    {
+        void report(String message);
+    }
+
+    static final Output SILENT = message -> {};
+
+    private final Output output;
     private State state;
 
     public LightSwitch()
     {
-        this.state = new OffState();
+        this(System.out::println);
+    }
+
+    public LightSwitch(Output output)
+    {
+        this(output, OffState.INSTANCE);
+    }
+
+    public LightSwitch(Output output, State initial)
+    {
+        this.output = output;
+        this.state = initial;
+        initial.enter(this);
     }
 
     public void setState(State state)
     {
+        this.state.exit(this);
         this.state = state;
+        state.enter(this);
+    }
+
+    void report(String message)
+    {
+        output.report(message);
     }
 
     void on()
@@ -49,31 +129,73 @@ class LightSwitch
 
 class OnState extends State
 {
-    public OnState()
+    static final OnState INSTANCE = new OnState();
+
+    private OnState()
     {
-        System.out.println("Light turned on");
     }
 
     @Override
     public void off(LightSwitch ls)
     {
-        System.out.println("Switching light off...");
-        ls.setState(new OffState());
+        ls.setState(OffState.INSTANCE);
+    }
+
+    @Override
+    void enter(LightSwitch ls)
+    {
+        ls.report("Light turned on");
+    }
+
+    @Override
+    void exit(LightSwitch ls)
+    {
+        ls.report("Switching light off...");
     }
 }
 
 class OffState extends State
 {
-    public OffState()
+    static final OffState INSTANCE = new OffState();
+
+    private OffState()
+    {
+    }
+
+    @Override
+    public void on(LightSwitch ls)
+    {
+        ls.setState(OnState.INSTANCE);
+    }
+
+    @Override
+    void enter(LightSwitch ls)
+    {
+        ls.report("Light turned off");
+    }
+
+    @Override
+    void exit(LightSwitch ls)
+    {
+        ls.report("Switching light on...");
+    }
+}
+
+// the states as they used to be, creating a new one on every transition, kept for comparison
+class FreshOnState extends State
+{
+    @Override
+    public void off(LightSwitch ls)
     {
-        System.out.println("Light turned off");
-        
+        ls.setState(new FreshOffState());
     }
+}
 
+class FreshOffState extends State
+{
     @Override
     public void on(LightSwitch ls)
     {
-        System.out.println("Switching light on...");
-        ls.setState(new OnState());
+        ls.setState(new FreshOnState());
     }
 }
@@ -7,7 +7,7 @@ import java.util.Map;
 
 public class HandmadeStatePattern {
 
-    private static Map<PhoneState, List<Map.Entry<PhoneTrigger, PhoneState>>>
+    static Map<PhoneState, List<Map.Entry<PhoneTrigger, PhoneState>>>
         machineRules = new HashMap<>();
 
     static